@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.benchmarks;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.shareddata.AsyncMap;
+import io.vertx.core.shareddata.Counter;
+import io.vertx.core.spi.cluster.AsyncMultiMap;
+import net.kuujo.copycat.cluster.ClusterConfig;
+import net.kuujo.copycat.protocol.LocalProtocol;
+import net.kuujo.copycat.vertx.ClusterManagerConfig;
+import net.kuujo.copycat.vertx.CopycatClusterManager;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * In-process cluster shared by all benchmarks.<p>
+ *
+ * Each trial starts a cluster of the configured size over the local protocol and opens one of each resource type on
+ * the first node. Operations are submitted through the first node's cluster manager.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+@State(Scope.Benchmark)
+public class ClusterState {
+  private static final AtomicInteger clusterId = new AtomicInteger();
+  private static final long TIMEOUT = 30;
+  private static final int KEYS = 1024;
+
+  @Param({"1", "3", "5"})
+  public int nodes;
+
+  private final List<CopycatClusterManager> members = new ArrayList<>();
+  public CopycatClusterManager clusterManager;
+  public AsyncMap<String, String> asyncMap;
+  public AsyncMultiMap<String, String> asyncMultiMap;
+  public Counter counter;
+  public Map<String, String> syncMap;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    int id = clusterId.incrementAndGet();
+    List<String> uris = new ArrayList<>();
+    for (int i = 1; i <= nodes; i++) {
+      uris.add(String.format("local://cluster%d-node%d", id, i));
+    }
+
+    for (String uri : uris) {
+      ClusterConfig cluster = new ClusterConfig()
+        .withProtocol(new LocalProtocol())
+        .withLocalMember(uri)
+        .withMembers(uris);
+      members.add(new CopycatClusterManager(cluster, config()));
+    }
+
+    List<CompletableFuture<Void>> joins = new ArrayList<>();
+    for (CopycatClusterManager member : members) {
+      joins.add(future(member::join));
+    }
+    for (CompletableFuture<Void> join : joins) {
+      join.get(TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    clusterManager = members.get(0);
+    asyncMap = await(handler -> clusterManager.getAsyncMap("benchmark-map", handler));
+    asyncMultiMap = await(handler -> clusterManager.getAsyncMultiMap("benchmark-multimap", handler));
+    counter = await(handler -> clusterManager.getCounter("benchmark-counter", handler));
+    syncMap = clusterManager.getSyncMap("benchmark-sync-map");
+  }
+
+  /**
+   * Returns the cluster manager configuration to benchmark.
+   */
+  protected ClusterManagerConfig config() {
+    return new ClusterManagerConfig();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    List<CompletableFuture<Void>> leaves = new ArrayList<>();
+    for (CopycatClusterManager member : members) {
+      leaves.add(future(member::leave));
+    }
+    for (CompletableFuture<Void> leave : leaves) {
+      leave.get(TIMEOUT, TimeUnit.SECONDS);
+    }
+    members.clear();
+  }
+
+  /**
+   * Returns a random key from a fixed key space.
+   */
+  public String key() {
+    return "key" + ThreadLocalRandom.current().nextInt(KEYS);
+  }
+
+  /**
+   * Runs an asynchronous operation and waits for its result.
+   */
+  public static <T> T await(Consumer<Handler<AsyncResult<T>>> operation) throws Exception {
+    return future(operation).get(TIMEOUT, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Runs an asynchronous operation, returning a future to be completed with its result.
+   */
+  private static <T> CompletableFuture<T> future(Consumer<Handler<AsyncResult<T>>> operation) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    operation.accept(result -> {
+      if (result.succeeded()) {
+        future.complete(result.result());
+      } else {
+        future.completeExceptionally(result.cause());
+      }
+    });
+    return future;
+  }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counter benchmarks.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CounterBenchmark {
+
+  @Benchmark
+  public Long incrementAndGet(ClusterState cluster) throws Exception {
+    return ClusterState.await(cluster.counter::incrementAndGet);
+  }
+
+  @Benchmark
+  public Long get(ClusterState cluster) throws Exception {
+    return ClusterState.await(cluster.counter::get);
+  }
+
+  @Benchmark
+  public Boolean compareAndSet(ClusterState cluster) throws Exception {
+    return ClusterState.await(handler -> cluster.counter.compareAndSet(0, 0, handler));
+  }
+
+}
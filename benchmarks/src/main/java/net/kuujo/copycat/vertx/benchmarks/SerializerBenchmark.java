@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.benchmarks;
+
+import io.vertx.core.net.impl.ServerID;
+import net.kuujo.copycat.vertx.CodecRegistry;
+import net.kuujo.copycat.vertx.impl.CodecSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Key and value serialization benchmarks.<p>
+ *
+ * Compares a round trip through the codec serializer with a round trip through Java serialization for typical event
+ * bus subscription keys and values. Run with {@code -prof gc} to compare allocation rates.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializerBenchmark {
+  private final CodecSerializer serializer = new CodecSerializer(new CodecRegistry(), 0);
+  private final String address = "benchmarks.serializer.address";
+  private final ServerID serverId = new ServerID(5701, "10.0.0.1");
+
+  @Benchmark
+  public Object codecString() {
+    return serializer.readObject(serializer.writeObject(address));
+  }
+
+  @Benchmark
+  public Object javaString() throws Exception {
+    return javaRoundTrip(address);
+  }
+
+  @Benchmark
+  public Object codecServerID() {
+    return serializer.readObject(serializer.writeObject(serverId));
+  }
+
+  @Benchmark
+  public Object javaServerID() throws Exception {
+    return javaRoundTrip(serverId);
+  }
+
+  /**
+   * Serializes and deserializes a value with Java serialization.
+   */
+  private static Object javaRoundTrip(Object value) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(value);
+    }
+    try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return input.readObject();
+    }
+  }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx;
+
+import java.io.Serializable;
+
+/**
+ * Map or multimap change event.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class ChangeEvent<K, V> implements Serializable {
+
+  /**
+   * Change event type.
+   */
+  public static enum Type {
+
+    /**
+     * A value was put in the map or added to a multimap key.
+     */
+    PUT,
+
+    /**
+     * A key was removed from the map or a value was removed from a multimap key.
+     */
+    REMOVE,
+
+    /**
+     * A key was removed from the map because its TTL expired.
+     */
+    EXPIRE,
+
+    /**
+     * The map was cleared.
+     */
+    CLEAR
+
+  }
+
+  private final long index;
+  private final Type type;
+  private final K key;
+  private final V value;
+
+  public ChangeEvent(Type type, K key, V value) {
+    this(0, type, key, value);
+  }
+
+  public ChangeEvent(long index, Type type, K key, V value) {
+    this.index = index;
+    this.type = type;
+    this.key = key;
+    this.value = value;
+  }
+
+  /**
+   * Returns the index of the event in the change feed.<p>
+   *
+   * A consumer that reconnects can resume the feed from the index following the last event it handled.
+   *
+   * @return The index of the event.
+   */
+  public long index() {
+    return index;
+  }
+
+  /**
+   * Returns the event type.
+   *
+   * @return The event type.
+   */
+  public Type type() {
+    return type;
+  }
+
+  /**
+   * Returns the key that changed.
+   *
+   * @return The key that changed or {@code null} for {@link Type#CLEAR} events.
+   */
+  public K key() {
+    return key;
+  }
+
+  /**
+   * Returns the value that was put or removed.
+   *
+   * @return The value that was put or removed, or {@code null} if the removed value is unknown.
+   */
+  public V value() {
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("ChangeEvent[index=%d, type=%s, key=%s, value=%s]", index, type, key, value);
+  }
+
+}
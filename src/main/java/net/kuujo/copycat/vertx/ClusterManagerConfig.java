@@ -0,0 +1,840 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx;
+
+import java.util.Objects;
+
+/**
+ * Copycat cluster manager configuration.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class ClusterManagerConfig {
+  private static final long DEFAULT_NEAR_CACHE_TTL = 0;
+  private static final long DEFAULT_NEAR_CACHE_MAX_MEMORY = 0;
+  private static final long DEFAULT_BATCH_WINDOW = 0;
+  private static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+  private static final long DEFAULT_LOCK_LEASE_TIME = 0;
+  private static final long DEFAULT_RESOURCE_IDLE_TIMEOUT = 60000;
+  private static final CounterMode DEFAULT_COUNTER_MODE = CounterMode.EXACT;
+  private static final long DEFAULT_COUNTER_FLUSH_INTERVAL = 100;
+  private static final int DEFAULT_COMPRESSION_THRESHOLD = 0;
+  private static final int DEFAULT_LOG_SEGMENT_SIZE = 1024 * 1024 * 32;
+  private static final long DEFAULT_LOG_SEGMENT_INTERVAL = 1000 * 60 * 60;
+  private static final int DEFAULT_MAX_CONCURRENT_OPENS = 0;
+  private static final int DEFAULT_PARTITIONS = 1;
+  private static final long DEFAULT_MEMBERSHIP_BATCH_WINDOW = 0;
+  private static final long DEFAULT_MEMBER_SUSPICION_TIMEOUT = 0;
+  private static final ReadConsistency DEFAULT_READ_CONSISTENCY = ReadConsistency.LINEARIZABLE;
+
+  private long nearCacheTtl = DEFAULT_NEAR_CACHE_TTL;
+  private long nearCacheMaxMemory = DEFAULT_NEAR_CACHE_MAX_MEMORY;
+  private long batchWindow = DEFAULT_BATCH_WINDOW;
+  private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+  private long lockLeaseTime = DEFAULT_LOCK_LEASE_TIME;
+  private long resourceIdleTimeout = DEFAULT_RESOURCE_IDLE_TIMEOUT;
+  private CounterMode counterMode = DEFAULT_COUNTER_MODE;
+  private long counterFlushInterval = DEFAULT_COUNTER_FLUSH_INTERVAL;
+  private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+  private String logDirectory;
+  private int logSegmentSize = DEFAULT_LOG_SEGMENT_SIZE;
+  private long logSegmentInterval = DEFAULT_LOG_SEGMENT_INTERVAL;
+  private int maxConcurrentOpens = DEFAULT_MAX_CONCURRENT_OPENS;
+  private int partitions = DEFAULT_PARTITIONS;
+  private boolean learner;
+  private long membershipBatchWindow = DEFAULT_MEMBERSHIP_BATCH_WINDOW;
+  private long memberSuspicionTimeout = DEFAULT_MEMBER_SUSPICION_TIMEOUT;
+  private boolean changeFeeds;
+  private ReadConsistency mapReadConsistency;
+  private ReadConsistency multiMapReadConsistency;
+  private ReadConsistency counterReadConsistency;
+  private ClusterManagerMetrics metrics = new DefaultClusterManagerMetrics();
+
+  /**
+   * Sets the multimap near-cache time to live in milliseconds.<p>
+   *
+   * When the TTL is positive, subscription lookups are served from a node-local cache. Entries older than the TTL
+   * are still served but are refreshed from the cluster in the background. A TTL of {@code 0} disables the cache.
+   *
+   * @param ttl The near-cache time to live in milliseconds.
+   * @throws java.lang.IllegalArgumentException If the TTL is negative
+   */
+  public void setNearCacheTtl(long ttl) {
+    if (ttl < 0)
+      throw new IllegalArgumentException("near cache TTL must not be negative");
+    this.nearCacheTtl = ttl;
+  }
+
+  /**
+   * Returns the multimap near-cache time to live in milliseconds.
+   *
+   * @return The near-cache time to live in milliseconds.
+   */
+  public long getNearCacheTtl() {
+    return nearCacheTtl;
+  }
+
+  /**
+   * Sets the multimap near-cache time to live in milliseconds, returning the configuration for method chaining.
+   *
+   * @param ttl The near-cache time to live in milliseconds.
+   * @return The cluster manager configuration.
+   * @throws java.lang.IllegalArgumentException If the TTL is negative
+   */
+  public ClusterManagerConfig withNearCacheTtl(long ttl) {
+    setNearCacheTtl(ttl);
+    return this;
+  }
+
+  /**
+   * Sets the maximum memory of each multimap near-cache in bytes.<p>
+   *
+   * The size of a cache entry is estimated from the encoded size of its key and values, and entries that would exceed
+   * the maximum are not cached. A maximum of {@code 0} leaves the cache unbounded.
+   *
+   * @param maxMemory The maximum near-cache memory in bytes.
+   * @throws java.lang.IllegalArgumentException If the maximum is negative
+   */
+  public void setNearCacheMaxMemory(long maxMemory) {
+    if (maxMemory < 0)
+      throw new IllegalArgumentException("near cache max memory must not be negative");
+    this.nearCacheMaxMemory = maxMemory;
+  }
+
+  /**
+   * Returns the maximum memory of each multimap near-cache in bytes.
+   *
+   * @return The maximum near-cache memory in bytes.
+   */
+  public long getNearCacheMaxMemory() {
+    return nearCacheMaxMemory;
+  }
+
+  /**
+   * Sets the maximum memory of each multimap near-cache in bytes, returning the configuration for method chaining.
+   *
+   * @param maxMemory The maximum near-cache memory in bytes.
+   * @return The cluster manager configuration.
+   * @throws java.lang.IllegalArgumentException If the maximum is negative
+   */
+  public ClusterManagerConfig withNearCacheMaxMemory(long maxMemory) {
+    setNearCacheMaxMemory(maxMemory);
+    return this;
+  }
+
+  /**
+   * Sets the map write batch window in milliseconds.<p>
+   *
+   * When the window is positive, concurrent map puts are grouped and committed as a single {@code putAll} command.
+   * A put to an idle map is held for at most the batch window, and puts that arrive while a batch is being committed
+   * are sent as the next batch. A window of {@code 0} disables batching.
+   *
+   * @param window The batch window in milliseconds.
+   * @throws java.lang.IllegalArgumentException If the window is negative
+   */
+  public void setBatchWindow(long window) {
+    if (window < 0)
+      throw new IllegalArgumentException("batch window must not be negative");
+    this.batchWindow = window;
+  }
+
+  /**
+   * Returns the map write batch window in milliseconds.
+   *
+   * @return The batch window in milliseconds.
+   */
+  public long getBatchWindow() {
+    return batchWindow;
+  }
+
+  /**
+   * Sets the map write batch window in milliseconds, returning the configuration for method chaining.
+   *
+   * @param window The batch window in milliseconds.
+   * @return The cluster manager configuration.
+   * @throws java.lang.IllegalArgumentException If the window is negative
+   */
+  public ClusterManagerConfig withBatchWindow(long window) {
+    setBatchWindow(window);
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of puts in a single write batch.
+   *
+   * @param maxBatchSize The maximum batch size.
+   * @throws java.lang.IllegalArgumentException If the batch size is not positive
+   */
+  public void setMaxBatchSize(int maxBatchSize) {
+    if (maxBatchSize <= 0)
+      throw new IllegalArgumentException("max batch size must be positive");
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * Returns the maximum number of puts in a single write batch.
+   *
+   * @return The maximum batch size.
+   */
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * Sets the maximum number of puts in a single write batch, returning the configuration for method chaining.
+   *
+   * @param maxBatchSize The maximum batch size.
+   * @return The cluster manager configuration.
+   * @throws java.lang.IllegalArgumentException If the batch size is not positive
+   */
+  public ClusterManagerConfig withMaxBatchSize(int maxBatchSize) {
+    setMaxBatchSize(maxBatchSize);
+    return this;
+  }
+
+  /**
+   * Sets the lock lease time in milliseconds.<p>
+   *
+   * When the lease time is positive, a node retains a lock for up to the lease time after acquiring it. Releasing the
+   * lock within the lease hands it to the next waiter on the same node, or keeps it so that the next acquire on the
+   * node completes without a consensus round. A lease time of {@code 0} disables leases.
+   *
+   * @param leaseTime The lock lease time in milliseconds.
+   * @throws java.lang.IllegalArgumentException If the lease time is negative
+   */
+  public void setLockLeaseTime(long leaseTime) {
+    if (leaseTime < 0)
+      throw new IllegalArgumentException("lock lease time must not be negative");
+    this.lockLeaseTime = leaseTime;
+  }
+
+  /**
+   * Returns the lock lease time in milliseconds.
+   *
+   * @return The lock lease time in milliseconds.
+   */
+  public long getLockLeaseTime() {
+    return lockLeaseTime;
+  }
+
+  /**
+   * Sets the lock lease time in milliseconds, returning the configuration for method chaining.
+   *
+   * @param leaseTime The lock lease time in milliseconds.
+   * @return The cluster manager configuration.
+   * @throws java.lang.IllegalArgumentException If the lease time is negative
+   */
+  public ClusterManagerConfig withLockLeaseTime(long leaseTime) {
+    setLockLeaseTime(leaseTime);
+    return this;
+  }
+
+  /**
+   * Sets the counter mode.<p>
+   *
+   * In {@link CounterMode#SHARDED} mode, counter updates are accumulated on the local node and flushed to the cluster
+   * once per flush interval, trading exact update results for far fewer consensus rounds under contention.
+   *
+   * @param counterMode The counter mode.
+   * @throws java.lang.NullPointerException If the counter mode is {@code null}
+   */
+  public void setCounterMode(CounterMode counterMode) {
+    this.counterMode = Objects.requireNonNull(counterMode);
+  }
+
+  /**
+   * Returns the counter mode.
+   *
+   * @return The counter mode.
+   */
+  public CounterMode getCounterMode() {
+    return counterMode;
+  }
+
+  /**
+   * Sets the counter mode, returning the configuration for method chaining.
+   *
+   * @param counterMode The counter mode.
+   * @return The cluster manager configuration.
+   * @throws java.lang.NullPointerException If the counter mode is {@code null}
+   */
+  public ClusterManagerConfig withCounterMode(CounterMode counterMode) {
+    setCounterMode(counterMode);
+    return this;
+  }
+
+  /**
+   * Sets the sharded counter flush interval in milliseconds.<p>
+   *
+   * The flush interval bounds how long a counter update made in {@link CounterMode#SHARDED} mode may remain
+   * invisible to other nodes.
+   *
+   * @param flushInterval The counter flush interval in milliseconds.
+   * @throws java.lang.IllegalArgumentException If the flush interval is not positive
+   */
+  public void setCounterFlushInterval(long flushInterval) {
+    if (flushInterval <= 0)
+      throw new IllegalArgumentException("counter flush interval must be positive");
+    this.counterFlushInterval = flushInterval;
+  }
+
+  /**
+   * Returns the sharded counter flush interval in milliseconds.
+   *
+   * @return The counter flush interval in milliseconds.
+   */
+  public long getCounterFlushInterval() {
+    return counterFlushInterval;
+  }
+
+  /**
+   * Sets the sharded counter flush interval in milliseconds, returning the configuration for method chaining.
+   *
+   * @param flushInterval The counter flush interval in milliseconds.
+   * @return The cluster manager configuration.
+   * @throws java.lang.IllegalArgumentException If the flush interval is not positive
+   */
+  public ClusterManagerConfig withCounterFlushInterval(long flushInterval) {
+    setCounterFlushInterval(flushInterval);
+    return this;
+  }
+
+  /**
+   * Sets the value compression threshold in bytes.<p>
+   *
+   * Encoded map and multimap keys and values at least as large as the threshold are deflated before they're written
+   * to the log. A threshold of {@code 0} disables compression.
+   *
+   * @param compressionThreshold The compression threshold in bytes.
+   * @throws java.lang.IllegalArgumentException If the threshold is negative
+   */
+  public void setCompressionThreshold(int compressionThreshold) {
+    if (compressionThreshold < 0)
+      throw new IllegalArgumentException("compression threshold must not be negative");
+    this.compressionThreshold = compressionThreshold;
+  }
+
+  /**
+   * Returns the value compression threshold in bytes.
+   *
+   * @return The compression threshold in bytes.
+   */
+  public int getCompressionThreshold() {
+    return compressionThreshold;
+  }
+
+  /**
+   * Sets the value compression threshold in bytes, returning the configuration for method chaining.
+   *
+   * @param compressionThreshold The compression threshold in bytes.
+   * @return The cluster manager configuration.
+   * @throws java.lang.IllegalArgumentException If the threshold is negative
+   */
+  public ClusterManagerConfig withCompressionThreshold(int compressionThreshold) {
+    setCompressionThreshold(compressionThreshold);
+    return this;
+  }
+
+  /**
+   * Sets the directory in which resource logs are stored.<p>
+   *
+   * When a log directory is set, each map, multimap, counter, and lock is backed by a segmented file log in the
+   * directory, so a restarted node recovers its state from disk and only catches up on entries it missed. When no
+   * directory is set, logs are held in memory.
+   *
+   * @param logDirectory The log directory or {@code null} to store logs in memory.
+   */
+  public void setLogDirectory(String logDirectory) {
+    this.logDirectory = logDirectory;
+  }
+
+  /**
+   * Returns the directory in which resource logs are stored.
+   *
+   * @return The log directory or {@code null} if logs are stored in memory.
+   */
+  public String getLogDirectory() {
+    return logDirectory;
+  }
+
+  /**
+   * Sets the directory in which resource logs are stored, returning the configuration for method chaining.
+   *
+   * @param logDirectory The log directory or {@code null} to store logs in memory.
+   * @return The cluster manager configuration.
+   */
+  public ClusterManagerConfig withLogDirectory(String logDirectory) {
+    setLogDirectory(logDirectory);
+    return this;
+  }
+
+  /**
+   * Sets the maximum size of a log segment file in bytes.
+   *
+   * @param segmentSize The log segment size in bytes.
+   * @throws java.lang.IllegalArgumentException If the segment size is not positive
+   */
+  public void setLogSegmentSize(int segmentSize) {
+    if (segmentSize <= 0)
+      throw new IllegalArgumentException("log segment size must be positive");
+    this.logSegmentSize = segmentSize;
+  }
+
+  /**
+   * Returns the maximum size of a log segment file in bytes.
+   *
+   * @return The log segment size in bytes.
+   */
+  public int getLogSegmentSize() {
+    return logSegmentSize;
+  }
+
+  /**
+   * Sets the maximum size of a log segment file in bytes, returning the configuration for method chaining.
+   *
+   * @param segmentSize The log segment size in bytes.
+   * @return The cluster manager configuration.
+   * @throws java.lang.IllegalArgumentException If the segment size is not positive
+   */
+  public ClusterManagerConfig withLogSegmentSize(int segmentSize) {
+    setLogSegmentSize(segmentSize);
+    return this;
+  }
+
+  /**
+   * Sets the log segment interval in milliseconds.<p>
+   *
+   * A new segment is started once the current segment reaches the segment size or has been open for longer than the
+   * segment interval. Completed segments are eligible for compaction, so the interval bounds how long compactable
+   * entries are retained on disk.
+   *
+   * @param segmentInterval The log segment interval in milliseconds.
+   * @throws java.lang.IllegalArgumentException If the segment interval is not positive
+   */
+  public void setLogSegmentInterval(long segmentInterval) {
+    if (segmentInterval <= 0)
+      throw new IllegalArgumentException("log segment interval must be positive");
+    this.logSegmentInterval = segmentInterval;
+  }
+
+  /**
+   * Returns the log segment interval in milliseconds.
+   *
+   * @return The log segment interval in milliseconds.
+   */
+  public long getLogSegmentInterval() {
+    return logSegmentInterval;
+  }
+
+  /**
+   * Sets the log segment interval in milliseconds, returning the configuration for method chaining.
+   *
+   * @param segmentInterval The log segment interval in milliseconds.
+   * @return The cluster manager configuration.
+   * @throws java.lang.IllegalArgumentException If the segment interval is not positive
+   */
+  public ClusterManagerConfig withLogSegmentInterval(long segmentInterval) {
+    setLogSegmentInterval(segmentInterval);
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of resources that may be opened concurrently.<p>
+   *
+   * Opening a resource on a node that has just joined the cluster requires the node to catch up on the resource's
+   * state. Limiting the number of concurrent opens spreads that catch-up out over time rather than requesting the
+   * state of every resource at once. A limit of {@code 0} allows any number of concurrent opens.
+   *
+   * @param maxConcurrentOpens The maximum number of concurrent resource opens.
+   * @throws java.lang.IllegalArgumentException If the limit is negative
+   */
+  public void setMaxConcurrentOpens(int maxConcurrentOpens) {
+    if (maxConcurrentOpens < 0)
+      throw new IllegalArgumentException("max concurrent opens must not be negative");
+    this.maxConcurrentOpens = maxConcurrentOpens;
+  }
+
+  /**
+   * Returns the maximum number of resources that may be opened concurrently.
+   *
+   * @return The maximum number of concurrent resource opens.
+   */
+  public int getMaxConcurrentOpens() {
+    return maxConcurrentOpens;
+  }
+
+  /**
+   * Sets the maximum number of resources that may be opened concurrently, returning the configuration for method
+   * chaining.
+   *
+   * @param maxConcurrentOpens The maximum number of concurrent resource opens.
+   * @return The cluster manager configuration.
+   * @throws java.lang.IllegalArgumentException If the limit is negative
+   */
+  public ClusterManagerConfig withMaxConcurrentOpens(int maxConcurrentOpens) {
+    setMaxConcurrentOpens(maxConcurrentOpens);
+    return this;
+  }
+
+  /**
+   * Sets the number of partitions into which each map and multimap is split.<p>
+   *
+   * Each partition is a separate Copycat resource with its own leader, so partitioning spreads the writes to a single
+   * map across the cluster. Single-key operations are routed to the key's partition, while operations on the whole
+   * map, such as {@code size} and {@code clear}, are applied to every partition and are not atomic across partitions.
+   * All nodes must be configured with the same number of partitions.
+   *
+   * @param partitions The number of partitions.
+   * @throws java.lang.IllegalArgumentException If the number of partitions is not positive
+   */
+  public void setPartitions(int partitions) {
+    if (partitions <= 0)
+      throw new IllegalArgumentException("partitions must be positive");
+    this.partitions = partitions;
+  }
+
+  /**
+   * Returns the number of partitions into which each map and multimap is split.
+   *
+   * @return The number of partitions.
+   */
+  public int getPartitions() {
+    return partitions;
+  }
+
+  /**
+   * Sets the number of partitions into which each map and multimap is split, returning the configuration for method
+   * chaining.
+   *
+   * @param partitions The number of partitions.
+   * @return The cluster manager configuration.
+   * @throws java.lang.IllegalArgumentException If the number of partitions is not positive
+   */
+  public ClusterManagerConfig withPartitions(int partitions) {
+    setPartitions(partitions);
+    return this;
+  }
+
+  /**
+   * Sets the resource idle timeout in milliseconds.<p>
+   *
+   * Lock resources that have been neither held nor awaited for longer than the idle timeout are closed. Maps,
+   * multimaps, and counters remain open once opened. A timeout of {@code 0} disables idle eviction.
+   *
+   * @param idleTimeout The resource idle timeout in milliseconds.
+   * @throws java.lang.IllegalArgumentException If the timeout is negative
+   */
+  public void setResourceIdleTimeout(long idleTimeout) {
+    if (idleTimeout < 0)
+      throw new IllegalArgumentException("resource idle timeout must not be negative");
+    this.resourceIdleTimeout = idleTimeout;
+  }
+
+  /**
+   * Returns the resource idle timeout in milliseconds.
+   *
+   * @return The resource idle timeout in milliseconds.
+   */
+  public long getResourceIdleTimeout() {
+    return resourceIdleTimeout;
+  }
+
+  /**
+   * Sets the resource idle timeout in milliseconds, returning the configuration for method chaining.
+   *
+   * @param idleTimeout The resource idle timeout in milliseconds.
+   * @return The cluster manager configuration.
+   * @throws java.lang.IllegalArgumentException If the timeout is negative
+   */
+  public ClusterManagerConfig withResourceIdleTimeout(long idleTimeout) {
+    setResourceIdleTimeout(idleTimeout);
+    return this;
+  }
+
+  /**
+   * Sets whether the node is a learner.<p>
+   *
+   * Learner nodes replicate the cluster's logs and serve local reads, but don't vote in elections or count towards
+   * commit quorums, so adding learners doesn't increase commit latency. A learner's local member must not be listed
+   * among the cluster's members. Unless read consistencies are set explicitly, learners default to
+   * {@link ReadConsistency#SEQUENTIAL} reads so that reads are served from the local node.
+   *
+   * @param learner Whether the node is a learner.
+   */
+  public void setLearner(boolean learner) {
+    this.learner = learner;
+  }
+
+  /**
+   * Returns whether the node is a learner.
+   *
+   * @return Whether the node is a learner.
+   */
+  public boolean isLearner() {
+    return learner;
+  }
+
+  /**
+   * Sets whether the node is a learner, returning the configuration for method chaining.
+   *
+   * @param learner Whether the node is a learner.
+   * @return The cluster manager configuration.
+   */
+  public ClusterManagerConfig withLearner(boolean learner) {
+    setLearner(learner);
+    return this;
+  }
+
+  /**
+   * Sets the membership batch window in milliseconds.<p>
+   *
+   * Membership changes that occur within the window are delivered to Vert.x together at the end of the window, and a
+   * member that joins and leaves within the same window is not reported at all. A window of {@code 0} delivers each
+   * change as it occurs.
+   *
+   * @param batchWindow The membership batch window in milliseconds.
+   * @throws java.lang.IllegalArgumentException If the window is negative
+   */
+  public void setMembershipBatchWindow(long batchWindow) {
+    if (batchWindow < 0)
+      throw new IllegalArgumentException("membership batch window must not be negative");
+    this.membershipBatchWindow = batchWindow;
+  }
+
+  /**
+   * Returns the membership batch window in milliseconds.
+   *
+   * @return The membership batch window in milliseconds.
+   */
+  public long getMembershipBatchWindow() {
+    return membershipBatchWindow;
+  }
+
+  /**
+   * Sets the membership batch window in milliseconds, returning the configuration for method chaining.
+   *
+   * @param batchWindow The membership batch window in milliseconds.
+   * @return The cluster manager configuration.
+   * @throws java.lang.IllegalArgumentException If the window is negative
+   */
+  public ClusterManagerConfig withMembershipBatchWindow(long batchWindow) {
+    setMembershipBatchWindow(batchWindow);
+    return this;
+  }
+
+  /**
+   * Sets the member suspicion timeout in milliseconds.<p>
+   *
+   * A member that leaves the cluster is suspected for the suspicion timeout before it's reported to Vert.x as having
+   * left. If the member rejoins while it's suspected, neither the leave nor the join is reported, so the member's
+   * event bus subscriptions survive a quick restart. A timeout of {@code 0} reports leaves immediately.
+   *
+   * @param suspicionTimeout The member suspicion timeout in milliseconds.
+   * @throws java.lang.IllegalArgumentException If the timeout is negative
+   */
+  public void setMemberSuspicionTimeout(long suspicionTimeout) {
+    if (suspicionTimeout < 0)
+      throw new IllegalArgumentException("member suspicion timeout must not be negative");
+    this.memberSuspicionTimeout = suspicionTimeout;
+  }
+
+  /**
+   * Returns the member suspicion timeout in milliseconds.
+   *
+   * @return The member suspicion timeout in milliseconds.
+   */
+  public long getMemberSuspicionTimeout() {
+    return memberSuspicionTimeout;
+  }
+
+  /**
+   * Sets the member suspicion timeout in milliseconds, returning the configuration for method chaining.
+   *
+   * @param suspicionTimeout The member suspicion timeout in milliseconds.
+   * @return The cluster manager configuration.
+   * @throws java.lang.IllegalArgumentException If the timeout is negative
+   */
+  public ClusterManagerConfig withMemberSuspicionTimeout(long suspicionTimeout) {
+    setMemberSuspicionTimeout(suspicionTimeout);
+    return this;
+  }
+
+  /**
+   * Sets whether maps and multimaps publish change feeds.<p>
+   *
+   * When enabled, every committed change to a map or multimap is also committed to a replicated change feed for the
+   * map or multimap, which can be consumed as a stream via {@link CopycatClusterManager#getMapChangeStream} and
+   * {@link CopycatClusterManager#getMultiMapChangeStream}. Must be the same on all nodes.
+   *
+   * @param changeFeeds Whether maps and multimaps publish change feeds.
+   */
+  public void setChangeFeeds(boolean changeFeeds) {
+    this.changeFeeds = changeFeeds;
+  }
+
+  /**
+   * Returns whether maps and multimaps publish change feeds.
+   *
+   * @return Whether maps and multimaps publish change feeds.
+   */
+  public boolean isChangeFeeds() {
+    return changeFeeds;
+  }
+
+  /**
+   * Sets whether maps and multimaps publish change feeds, returning the configuration for method chaining.
+   *
+   * @param changeFeeds Whether maps and multimaps publish change feeds.
+   * @return The cluster manager configuration.
+   */
+  public ClusterManagerConfig withChangeFeeds(boolean changeFeeds) {
+    setChangeFeeds(changeFeeds);
+    return this;
+  }
+
+  /**
+   * Returns the read consistency used for structures without an explicit read consistency.
+   */
+  private ReadConsistency defaultReadConsistency() {
+    return learner ? ReadConsistency.SEQUENTIAL : DEFAULT_READ_CONSISTENCY;
+  }
+
+  /**
+   * Sets the read consistency for asynchronous and synchronous maps.
+   *
+   * @param consistency The map read consistency.
+   * @throws java.lang.NullPointerException If the consistency is {@code null}
+   */
+  public void setMapReadConsistency(ReadConsistency consistency) {
+    this.mapReadConsistency = Objects.requireNonNull(consistency);
+  }
+
+  /**
+   * Returns the read consistency for asynchronous and synchronous maps.
+   *
+   * @return The map read consistency.
+   */
+  public ReadConsistency getMapReadConsistency() {
+    return mapReadConsistency != null ? mapReadConsistency : defaultReadConsistency();
+  }
+
+  /**
+   * Sets the read consistency for asynchronous and synchronous maps, returning the configuration for method chaining.
+   *
+   * @param consistency The map read consistency.
+   * @return The cluster manager configuration.
+   * @throws java.lang.NullPointerException If the consistency is {@code null}
+   */
+  public ClusterManagerConfig withMapReadConsistency(ReadConsistency consistency) {
+    setMapReadConsistency(consistency);
+    return this;
+  }
+
+  /**
+   * Sets the read consistency for multimaps, including event bus subscription lookups.
+   *
+   * @param consistency The multimap read consistency.
+   * @throws java.lang.NullPointerException If the consistency is {@code null}
+   */
+  public void setMultiMapReadConsistency(ReadConsistency consistency) {
+    this.multiMapReadConsistency = Objects.requireNonNull(consistency);
+  }
+
+  /**
+   * Returns the read consistency for multimaps, including event bus subscription lookups.
+   *
+   * @return The multimap read consistency.
+   */
+  public ReadConsistency getMultiMapReadConsistency() {
+    return multiMapReadConsistency != null ? multiMapReadConsistency : defaultReadConsistency();
+  }
+
+  /**
+   * Sets the read consistency for multimaps, including event bus subscription lookups, returning the configuration
+   * for method chaining.
+   *
+   * @param consistency The multimap read consistency.
+   * @return The cluster manager configuration.
+   * @throws java.lang.NullPointerException If the consistency is {@code null}
+   */
+  public ClusterManagerConfig withMultiMapReadConsistency(ReadConsistency consistency) {
+    setMultiMapReadConsistency(consistency);
+    return this;
+  }
+
+  /**
+   * Sets the read consistency for counters.
+   *
+   * @param consistency The counter read consistency.
+   * @throws java.lang.NullPointerException If the consistency is {@code null}
+   */
+  public void setCounterReadConsistency(ReadConsistency consistency) {
+    this.counterReadConsistency = Objects.requireNonNull(consistency);
+  }
+
+  /**
+   * Returns the read consistency for counters.
+   *
+   * @return The counter read consistency.
+   */
+  public ReadConsistency getCounterReadConsistency() {
+    return counterReadConsistency != null ? counterReadConsistency : defaultReadConsistency();
+  }
+
+  /**
+   * Sets the read consistency for counters, returning the configuration for method chaining.
+   *
+   * @param consistency The counter read consistency.
+   * @return The cluster manager configuration.
+   * @throws java.lang.NullPointerException If the consistency is {@code null}
+   */
+  public ClusterManagerConfig withCounterReadConsistency(ReadConsistency consistency) {
+    setCounterReadConsistency(consistency);
+    return this;
+  }
+
+  /**
+   * Sets the cluster manager metrics.
+   *
+   * @param metrics The cluster manager metrics.
+   * @throws java.lang.NullPointerException If the metrics are {@code null}
+   */
+  public void setMetrics(ClusterManagerMetrics metrics) {
+    this.metrics = Objects.requireNonNull(metrics);
+  }
+
+  /**
+   * Returns the cluster manager metrics.
+   *
+   * @return The cluster manager metrics.
+   */
+  public ClusterManagerMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Sets the cluster manager metrics, returning the configuration for method chaining.
+   *
+   * @param metrics The cluster manager metrics.
+   * @return The cluster manager configuration.
+   * @throws java.lang.NullPointerException If the metrics are {@code null}
+   */
+  public ClusterManagerConfig withMetrics(ClusterManagerMetrics metrics) {
+    setMetrics(metrics);
+    return this;
+  }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx;
+
+/**
+ * Cluster manager metrics.<p>
+ *
+ * Metrics are notified when each map, multimap, counter, and lock operation and each resource open is started and
+ * completed, when operation result handlers are dispatched, and when members join or leave the cluster. Operations
+ * are identified by names of the form {@code <resource>.<method>}, e.g. {@code map.put} or {@code open.multimap}.
+ * Implementations are called from Copycat and Vert.x threads and must be thread safe and non-blocking.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public interface ClusterManagerMetrics {
+
+  /**
+   * Called when an operation is started.
+   *
+   * @param operation The operation name.
+   * @return The operation start time, to be passed to {@link #operationCompleted(String, long, Throwable)}.
+   */
+  long operationStarted(String operation);
+
+  /**
+   * Called when an operation is completed.
+   *
+   * @param operation The operation name.
+   * @param startTime The start time returned by {@link #operationStarted(String)}.
+   * @param error The operation error or {@code null} if the operation succeeded.
+   */
+  void operationCompleted(String operation, long startTime, Throwable error);
+
+  /**
+   * Called when an operation's result handler is called.
+   *
+   * @param delay The time in nanoseconds between the completion of the operation and the call to the handler on its
+   *              Vert.x context, or {@code 0} if the handler was called directly on the completing thread.
+   */
+  void handlerDispatched(long delay);
+
+  /**
+   * Called when a member joins the cluster.
+   *
+   * @param member The URI of the member that joined.
+   */
+  void memberJoined(String member);
+
+  /**
+   * Called when a member leaves the cluster.
+   *
+   * @param member The URI of the member that left.
+   */
+  void memberLeft(String member);
+
+}
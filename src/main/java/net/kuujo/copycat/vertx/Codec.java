@@ -0,0 +1,47 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Key and value codec.<p>
+ *
+ * Codecs write values directly into the serialization buffer. If a value doesn't fit in the remaining space, the codec
+ * should let the buffer throw {@link java.nio.BufferOverflowException}, in which case the value is encoded again into a
+ * larger buffer.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public interface Codec<T> {
+
+  /**
+   * Encodes a value.
+   *
+   * @param value The value to encode.
+   * @param buffer The buffer to which to write the value.
+   */
+  void encode(T value, ByteBuffer buffer);
+
+  /**
+   * Decodes a value.
+   *
+   * @param buffer The buffer from which to read the value.
+   * @return The decoded value.
+   */
+  T decode(ByteBuffer buffer);
+
+}
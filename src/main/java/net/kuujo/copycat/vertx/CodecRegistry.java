@@ -0,0 +1,157 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx;
+
+import io.vertx.core.net.impl.ServerID;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Key and value codec registry.<p>
+ *
+ * Each codec is registered with a type and an identifier that's written ahead of every value it encodes, so codecs
+ * must be registered with the same identifiers on every node in the cluster. Identifiers below {@link #MIN_USER_ID}
+ * are reserved for the built-in codecs for {@code String}, the primitive wrappers, and Vert.x {@code ServerID}.
+ * Values of types without a registered codec fall back to Java serialization.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class CodecRegistry {
+  public static final int MIN_USER_ID = 32;
+  public static final int MAX_ID = 255;
+
+  private final Map<Class<?>, Integer> ids = new ConcurrentHashMap<>();
+  private final AtomicReferenceArray<Codec<?>> codecs = new AtomicReferenceArray<>(MAX_ID + 1);
+
+  public CodecRegistry() {
+    registerCodec(2, String.class, codec(CodecRegistry::writeString, CodecRegistry::readString));
+    registerCodec(3, Boolean.class, codec((value, buffer) -> buffer.put((byte) (value ? 1 : 0)),
+      buffer -> buffer.get() == 1));
+    registerCodec(4, Byte.class, codec((value, buffer) -> buffer.put(value), ByteBuffer::get));
+    registerCodec(5, Short.class, codec((value, buffer) -> buffer.putShort(value), ByteBuffer::getShort));
+    registerCodec(6, Character.class, codec((value, buffer) -> buffer.putChar(value), ByteBuffer::getChar));
+    registerCodec(7, Integer.class, codec((value, buffer) -> buffer.putInt(value), ByteBuffer::getInt));
+    registerCodec(8, Long.class, codec((value, buffer) -> buffer.putLong(value), ByteBuffer::getLong));
+    registerCodec(9, Float.class, codec((value, buffer) -> buffer.putFloat(value), ByteBuffer::getFloat));
+    registerCodec(10, Double.class, codec((value, buffer) -> buffer.putDouble(value), ByteBuffer::getDouble));
+    registerCodec(11, ServerID.class, codec((value, buffer) -> {
+      buffer.putInt(value.port);
+      writeString(value.host, buffer);
+    }, buffer -> {
+      int port = buffer.getInt();
+      return new ServerID(port, readString(buffer));
+    }));
+  }
+
+  /**
+   * Registers a codec.
+   *
+   * @param id The codec identifier, which must be the same on all nodes.
+   * @param type The type encoded by the codec.
+   * @param codec The codec.
+   * @return The codec registry.
+   * @throws java.lang.IllegalArgumentException If the identifier is out of range or already registered
+   */
+  public <T> CodecRegistry register(int id, Class<T> type, Codec<T> codec) {
+    if (id < MIN_USER_ID || id > MAX_ID)
+      throw new IllegalArgumentException("codec id must be between " + MIN_USER_ID + " and " + MAX_ID);
+    registerCodec(id, type, codec);
+    return this;
+  }
+
+  /**
+   * Registers a codec without checking the reserved identifier range.
+   */
+  private <T> void registerCodec(int id, Class<T> type, Codec<T> codec) {
+    Objects.requireNonNull(type);
+    Objects.requireNonNull(codec);
+    if (!codecs.compareAndSet(id, null, codec))
+      throw new IllegalArgumentException("codec id " + id + " is already registered");
+    ids.put(type, id);
+  }
+
+  /**
+   * Returns the identifier of the codec for the given type.
+   *
+   * @param type The type for which to look up the codec.
+   * @return The codec identifier or {@code -1} if no codec is registered for the type.
+   */
+  public int id(Class<?> type) {
+    Integer id = ids.get(type);
+    return id != null ? id : -1;
+  }
+
+  /**
+   * Returns the codec with the given identifier.
+   *
+   * @param id The codec identifier.
+   * @return The codec or {@code null} if no codec is registered with the identifier.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> Codec<T> codec(int id) {
+    return id >= 0 && id <= MAX_ID ? (Codec<T>) codecs.get(id) : null;
+  }
+
+  /**
+   * Creates a codec from an encoder and decoder.
+   */
+  private static <T> Codec<T> codec(BiConsumer<T, ByteBuffer> encoder, Function<ByteBuffer, T> decoder) {
+    return new Codec<T>() {
+      @Override
+      public void encode(T value, ByteBuffer buffer) {
+        encoder.accept(value, buffer);
+      }
+
+      @Override
+      public T decode(ByteBuffer buffer) {
+        return decoder.apply(buffer);
+      }
+    };
+  }
+
+  /**
+   * Writes a length-prefixed UTF-8 string.
+   */
+  private static void writeString(String value, ByteBuffer buffer) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    buffer.putInt(bytes.length);
+    buffer.put(bytes);
+  }
+
+  /**
+   * Reads a length-prefixed UTF-8 string.
+   */
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (buffer.hasArray()) {
+      String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+        StandardCharsets.UTF_8);
+      buffer.position(buffer.position() + length);
+      return value;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+}
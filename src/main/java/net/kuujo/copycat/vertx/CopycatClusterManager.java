@@ -16,7 +16,6 @@
 package net.kuujo.copycat.vertx;
 
 import io.vertx.core.AsyncResult;
-import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.shareddata.AsyncMap;
 import io.vertx.core.shareddata.Counter;
@@ -25,16 +24,38 @@ import io.vertx.core.spi.cluster.AsyncMultiMap;
 import io.vertx.core.spi.cluster.ClusterManager;
 import io.vertx.core.spi.cluster.NodeListener;
 import io.vertx.core.spi.cluster.VertxSPI;
+import io.vertx.core.streams.ReadStream;
 import net.kuujo.copycat.Copycat;
+import net.kuujo.copycat.atomic.AsyncAtomicLongConfig;
 import net.kuujo.copycat.cluster.ClusterConfig;
 import net.kuujo.copycat.cluster.Member;
 import net.kuujo.copycat.cluster.MembershipEvent;
+import net.kuujo.copycat.cluster.MembershipListener;
+import net.kuujo.copycat.collections.AsyncMapConfig;
+import net.kuujo.copycat.collections.AsyncLockConfig;
+import net.kuujo.copycat.collections.AsyncMultiMapConfig;
+import net.kuujo.copycat.event.EventLogConfig;
+import net.kuujo.copycat.log.BufferedLog;
+import net.kuujo.copycat.log.FileLog;
+import net.kuujo.copycat.log.Log;
 import net.kuujo.copycat.vertx.impl.*;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ExecutionException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -43,12 +64,145 @@ import java.util.stream.Collectors;
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public class CopycatClusterManager implements ClusterManager {
+  private static final String PARTITION_SEPARATOR = "#";
+  private static final String MAP_FEED_SUFFIX = "$map-changes";
+  private static final String MULTIMAP_FEED_SUFFIX = "$multimap-changes";
+
   private final Copycat copycat;
+  private final boolean embedded;
+  private final ClusterManagerConfig config;
+  private final ScheduledExecutorService scheduler;
+  private final ResourceRegistry registry;
+  private final ClusterManagerMetrics metrics;
+  private final OperationTracker tracker;
+  private final Map<ReadConsistency, ReadStats> readStats = new EnumMap<>(ReadConsistency.class);
+  private final ConcurrentMap<String, LockStats> lockStats = new ConcurrentHashMap<>();
+  private final Set<CounterShard> shards = ConcurrentHashMap.newKeySet();
+  private final Set<CopycatAsyncMap<?, ?>> asyncMaps = ConcurrentHashMap.newKeySet();
+  private final CodecRegistry codecs = new CodecRegistry();
+  private final CodecSerializer serializer;
+  private final Log log;
+  private final ConcurrencyLimiter opens;
+  private final Partitioner partitioner;
+  private final MembershipView membership;
+  private final MembershipListener membershipListener = this::handleMembershipEvent;
   private NodeListener listener;
+  private volatile boolean active;
 
   public CopycatClusterManager(ClusterConfig cluster) {
+    this(cluster, new ClusterManagerConfig());
+  }
+
+  public CopycatClusterManager(ClusterConfig cluster, ClusterManagerConfig config) {
+    this(create(cluster, config), false, config);
+  }
+
+  /**
+   * Creates a cluster manager backed by an existing Copycat instance.<p>
+   *
+   * This allows the cluster manager to be embedded in an application that already runs a Copycat member, so that the
+   * application and Vert.x share a single member and its connections rather than each replicating the cluster's state.
+   * The cluster manager opens the instance on join if it's not already open, but never closes it, so resources opened
+   * by the cluster manager remain open until the instance is closed by its owner. Only one cluster manager may be
+   * backed by each instance.
+   *
+   * @param copycat The Copycat instance.
+   * @param config The cluster manager configuration.
+   */
+  public CopycatClusterManager(Copycat copycat, ClusterManagerConfig config) {
+    this(copycat, true, config);
+  }
+
+  private CopycatClusterManager(Copycat copycat, boolean embedded, ClusterManagerConfig config) {
+    Objects.requireNonNull(copycat);
+    Objects.requireNonNull(config);
+    this.copycat = copycat;
+    this.embedded = embedded;
+    this.config = config;
+    this.metrics = config.getMetrics();
+    this.tracker = new OperationTracker(metrics);
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "copycat-vertx-scheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.registry = new ResourceRegistry(scheduler, config.getResourceIdleTimeout());
+    this.serializer = new CodecSerializer(codecs, config.getCompressionThreshold());
+    this.log = config.getLogDirectory() != null ? new FileLog()
+      .withDirectory(config.getLogDirectory())
+      .withSegmentSize(config.getLogSegmentSize())
+      .withSegmentInterval(config.getLogSegmentInterval()) : new BufferedLog();
+    this.opens = new ConcurrencyLimiter(config.getMaxConcurrentOpens());
+    this.partitioner = new Partitioner(serializer, config.getPartitions());
+    this.membership = new MembershipView(scheduler, config.getMembershipBatchWindow(),
+      config.getMemberSuspicionTimeout(), this::handleMembershipChanges);
+    for (ReadConsistency consistency : ReadConsistency.values()) {
+      readStats.put(consistency, new ReadStats(consistency == ReadConsistency.LINEARIZABLE));
+    }
+  }
+
+  /**
+   * Creates the Copycat instance for a cluster configuration.
+   */
+  private static Copycat create(ClusterConfig cluster, ClusterManagerConfig config) {
     Objects.requireNonNull(cluster);
-    this.copycat = Copycat.create(cluster);
+    Objects.requireNonNull(config);
+    if (config.isLearner() && cluster.getMembers().contains(cluster.getLocalMember()))
+      throw new IllegalArgumentException("learner member " + cluster.getLocalMember()
+        + " must not be a cluster member");
+    return Copycat.create(cluster);
+  }
+
+  /**
+   * Returns the cluster manager metrics.<p>
+   *
+   * Unless custom metrics were configured, the returned metrics are a {@link DefaultClusterManagerMetrics} instance
+   * which can be queried for per-operation latencies and counts.
+   *
+   * @return The cluster manager metrics.
+   */
+  public ClusterManagerMetrics metrics() {
+    return metrics;
+  }
+
+  /**
+   * Returns the codec registry used to serialize map and multimap keys and values.<p>
+   *
+   * Codecs must be registered with the same identifiers on every node before any maps are used.
+   *
+   * @return The codec registry.
+   */
+  public CodecRegistry codecs() {
+    return codecs;
+  }
+
+  /**
+   * Returns read statistics for the given read consistency level.
+   *
+   * @param consistency The read consistency level.
+   * @return The read statistics for the consistency level.
+   */
+  public ReadStats readStats(ReadConsistency consistency) {
+    return readStats.get(consistency);
+  }
+
+  /**
+   * Returns contention statistics for a lock.
+   *
+   * @param name The lock name.
+   * @return The lock statistics or {@code null} if the lock has not been requested through the local node.
+   */
+  public LockStats lockStats(String name) {
+    return lockStats.get(name);
+  }
+
+  /**
+   * Returns contention statistics for all locks that have been requested through the local node.
+   *
+   * @return A map of lock names to lock statistics.
+   */
+  public Map<String, LockStats> lockStats() {
+    return Collections.unmodifiableMap(lockStats);
   }
 
   @Override
@@ -58,59 +212,229 @@ public class CopycatClusterManager implements ClusterManager {
 
   @Override
   public <K, V> void getAsyncMultiMap(String name, Handler<AsyncResult<AsyncMultiMap<K, V>>> resultHandler) {
-    copycat.<K, V>multiMap(name).open().whenComplete((result, error) -> {
-      if (error == null) {
-        Future.<AsyncMultiMap<K, V>>succeededFuture(new CopycatAsyncMultiMap<>(result)).setHandler(resultHandler);
-      } else {
-        Future.<AsyncMultiMap<K, V>>failedFuture(error).setHandler(resultHandler);
-      }
-    });
+    registry.<CopycatAsyncMultiMap<K, V>>get(CopycatAsyncMultiMap.class, name, () -> {
+      NearCache<K, Collection<V>> cache = config.getNearCacheTtl() > 0 ? this.<K, V>createNearCache() : null;
+      ReadStats stats = readStats.get(config.getMultiMapReadConsistency());
+      return this.<K, V>openMultiMap(name).thenCombine(this.<K, V>openFeed(name + MULTIMAP_FEED_SUFFIX),
+        (multiMap, feed) -> new CopycatAsyncMultiMap<>(multiMap, cache, feed, stats, metrics));
+    }).whenComplete(new Completion<AsyncMultiMap<K, V>>(resultHandler, metrics));
+  }
+
+  /**
+   * Opens the Copycat multimap backing the asynchronous multimap wrapper.
+   */
+  private <K, V> CompletableFuture<net.kuujo.copycat.collections.AsyncMultiMap<K, V>> openMultiMap(String name) {
+    return openPartitioned(name, partition -> open("open.multimap", () -> copycat.<K, V>multiMap(partition,
+      new AsyncMultiMapConfig()
+        .withConsistency(config.getMultiMapReadConsistency().consistency())
+        .withSerializer(serializer)
+        .withLog(log)).open()), partitions -> new PartitionedMultiMap<>(partitions, partitioner));
+  }
+
+  /**
+   * Creates a multimap near-cache whose entries are sized by the encoded size of their key and values.
+   */
+  private <K, V> NearCache<K, Collection<V>> createNearCache() {
+    return new NearCache<>(config.getNearCacheTtl(), new MemoryBudget(config.getNearCacheMaxMemory()),
+      (key, values) -> encodedSize(key) + values.stream().mapToLong(this::encodedSize).sum());
   }
 
   @Override
   public <K, V> void getAsyncMap(String name, Handler<AsyncResult<AsyncMap<K, V>>> resultHandler) {
-    copycat.<K, V>map(name).open().whenComplete((result, error) -> {
-      if (error == null) {
-        Future.<AsyncMap<K, V>>succeededFuture(new CopycatAsyncMap<K, V>(result)).setHandler(resultHandler);
-      }
-    });
+    registry.<CopycatAsyncMap<K, V>>get(CopycatAsyncMap.class, name, () -> this.<K, V>openMap(name)
+      .thenCombine(this.<K, V>openFeed(name + MAP_FEED_SUFFIX), (map, feed) -> {
+        WriteBatcher<K, V> batcher = config.getBatchWindow() > 0
+          ? new WriteBatcher<>(map, scheduler, config.getBatchWindow(), config.getMaxBatchSize()) : null;
+        ReadStats stats = readStats.get(config.getMapReadConsistency());
+        CopycatAsyncMap<K, V> asyncMap = new CopycatAsyncMap<>(map, batcher, feed, scheduler, stats, metrics);
+        asyncMaps.add(asyncMap);
+        return asyncMap;
+      })).whenComplete(new Completion<AsyncMap<K, V>>(resultHandler, metrics));
   }
 
   @Override
   public <K, V> Map<K, V> getSyncMap(String name) {
-    try {
-      return new CopycatMap<>(copycat.<K, V>map(name).open().get());
-    } catch (InterruptedException | ExecutionException e) {
-      throw new RuntimeException(e);
-    }
+    return new CopycatMap<>(openMap(name), openFeed(name + MAP_FEED_SUFFIX),
+      readStats.get(config.getMapReadConsistency()), metrics);
   }
 
-  @Override
-  public void getLockWithTimeout(String name, long timeout, Handler<AsyncResult<Lock>> resultHandler) {
-    copycat.lock(name).open().whenComplete((lock, error) -> {
+  /**
+   * Opens the Copycat map shared by the asynchronous and synchronous map wrappers.
+   */
+  private <K, V> CompletableFuture<net.kuujo.copycat.collections.AsyncMap<K, V>> openMap(String name) {
+    return registry.get(net.kuujo.copycat.collections.AsyncMap.class, name, () -> openPartitioned(name,
+      partition -> open("open.map", () -> copycat.<K, V>map(partition, new AsyncMapConfig()
+        .withConsistency(config.getMapReadConsistency().consistency())
+        .withSerializer(serializer)
+        .withLog(log)).open()), partitions -> new PartitionedMap<>(partitions, partitioner)));
+  }
+
+  /**
+   * Returns a stream of the changes to a map, starting with the next change.
+   *
+   * @param name The map name.
+   * @param resultHandler A handler to be called with the change stream.
+   * @throws java.lang.IllegalStateException If change feeds are disabled
+   */
+  public <K, V> void getMapChangeStream(String name,
+      Handler<AsyncResult<ReadStream<ChangeEvent<K, V>>>> resultHandler) {
+    getChangeStream(name + MAP_FEED_SUFFIX, 0, resultHandler);
+  }
+
+  /**
+   * Returns a stream of the changes to a map.<p>
+   *
+   * The stream starts at the change with the given index, so a consumer can resume the stream after the last change it
+   * handled by passing the index following that change's {@link ChangeEvent#index()}. Index {@code 1} starts from the
+   * oldest change that's still retained in the feed.
+   *
+   * @param name The map name.
+   * @param fromIndex The index of the first change to read.
+   * @param resultHandler A handler to be called with the change stream.
+   * @throws java.lang.IllegalStateException If change feeds are disabled
+   */
+  public <K, V> void getMapChangeStream(String name, long fromIndex,
+      Handler<AsyncResult<ReadStream<ChangeEvent<K, V>>>> resultHandler) {
+    if (fromIndex < 1)
+      throw new IllegalArgumentException("fromIndex must be positive");
+    getChangeStream(name + MAP_FEED_SUFFIX, fromIndex, resultHandler);
+  }
+
+  /**
+   * Returns a stream of the changes to a multimap, starting with the next change.
+   *
+   * @param name The multimap name.
+   * @param resultHandler A handler to be called with the change stream.
+   * @throws java.lang.IllegalStateException If change feeds are disabled
+   */
+  public <K, V> void getMultiMapChangeStream(String name,
+      Handler<AsyncResult<ReadStream<ChangeEvent<K, V>>>> resultHandler) {
+    getChangeStream(name + MULTIMAP_FEED_SUFFIX, 0, resultHandler);
+  }
+
+  /**
+   * Returns a stream of the changes to a multimap.<p>
+   *
+   * The stream starts at the change with the given index, as with {@link #getMapChangeStream(String, long, Handler)}.
+   *
+   * @param name The multimap name.
+   * @param fromIndex The index of the first change to read.
+   * @param resultHandler A handler to be called with the change stream.
+   * @throws java.lang.IllegalStateException If change feeds are disabled
+   */
+  public <K, V> void getMultiMapChangeStream(String name, long fromIndex,
+      Handler<AsyncResult<ReadStream<ChangeEvent<K, V>>>> resultHandler) {
+    if (fromIndex < 1)
+      throw new IllegalArgumentException("fromIndex must be positive");
+    getChangeStream(name + MULTIMAP_FEED_SUFFIX, fromIndex, resultHandler);
+  }
+
+  /**
+   * Opens a stream of the changes in a change feed, starting with the next change if the index is {@code 0}.
+   */
+  private <K, V> void getChangeStream(String feedName, long fromIndex,
+      Handler<AsyncResult<ReadStream<ChangeEvent<K, V>>>> resultHandler) {
+    if (!config.isChangeFeeds())
+      throw new IllegalStateException("change feeds are not enabled");
+    Completion<ReadStream<ChangeEvent<K, V>>> completion = new Completion<>(resultHandler, metrics);
+    this.<K, V>openFeed(feedName).whenComplete((feed, error) -> {
       if (error == null) {
-        lock.lock().whenComplete((lockResult, lockError) -> {
-          if (lockError == null) {
-            Future.<Lock>succeededFuture(new CopycatLock(lock)).setHandler(resultHandler);
-          } else {
-            Future.<Lock>failedFuture(lockError).setHandler(resultHandler);
-          }
-        });
+        completion.succeed(fromIndex > 0 ? feed.stream(fromIndex) : feed.stream());
       } else {
-        Future.<Lock>failedFuture(error).setHandler(resultHandler);
+        completion.fail(error);
       }
     });
   }
 
+  /**
+   * Opens the change feed shared by the wrappers of a map or multimap.
+   *
+   * @return The change feed or {@code null} if change feeds are disabled.
+   */
+  private <K, V> CompletableFuture<ChangeFeed<K, V>> openFeed(String feedName) {
+    if (!config.isChangeFeeds()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return registry.get(ChangeFeed.class, feedName, () -> open("open.feed", () -> copycat.<ChangeEvent<K, V>>eventLog(
+      feedName, new EventLogConfig().withSerializer(serializer).withLog(log)).open())
+      .thenCompose(eventLog -> new ChangeFeed<>(eventLog, metrics).open()));
+  }
+
+  /**
+   * Opens a resource that may be split across several partitions.<p>
+   *
+   * When partitioning is enabled, each partition is opened as a separate Copycat resource named for the logical
+   * resource and the partition number, and the partitions are combined into a single resource.
+   */
+  private <T> CompletableFuture<T> openPartitioned(String name, Function<String, CompletableFuture<T>> opener,
+      Function<List<T>, T> combiner) {
+    int partitions = partitioner.partitions();
+    if (partitions == 1) {
+      return opener.apply(name);
+    }
+    List<CompletableFuture<T>> futures = new ArrayList<>(partitions);
+    for (int i = 0; i < partitions; i++) {
+      futures.add(opener.apply(name + PARTITION_SEPARATOR + i));
+    }
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]))
+      .thenApply(v -> combiner.apply(futures.stream().map(CompletableFuture::join).collect(Collectors.toList())));
+  }
+
+  @Override
+  public void getLockWithTimeout(String name, long timeout, Handler<AsyncResult<Lock>> resultHandler) {
+    long requestTime = System.nanoTime();
+    long startTime = metrics.operationStarted("lock.acquire");
+    Completion<Lock> completion = new Completion<>(result -> {
+      metrics.operationCompleted("lock.acquire", startTime, result.cause());
+      resultHandler.handle(result);
+    }, metrics);
+
+    LockStats stats = lockStats.computeIfAbsent(name, n -> new LockStats());
+    registry.acquire(LockCoordinator.class, name, () -> open("open.lock", () -> copycat.lock(name,
+      new AsyncLockConfig().withLog(log)).open())
+      .thenApply(lock -> new LockCoordinator(name, lock, scheduler, config.getLockLeaseTime(), stats)),
+      LockCoordinator::close)
+      .whenComplete((coordinator, error) -> {
+        Runnable releaseHandler = () -> registry.release(LockCoordinator.class, name);
+        if (error == null) {
+          coordinator.acquire(requestTime, timeout, releaseHandler, completion);
+        } else {
+          releaseHandler.run();
+          completion.fail(error);
+        }
+      });
+  }
+
   @Override
   public void getCounter(String name, Handler<AsyncResult<Counter>> resultHandler) {
-    copycat.atomicLong(name).open().whenComplete((counter, error) -> {
-      if (error == null) {
-        Future.<Counter>succeededFuture(new CopycatCounter(counter)).setHandler(resultHandler);
-      } else {
-        Future.<Counter>failedFuture(error).setHandler(resultHandler);
-      }
-    });
+    registry.<CopycatCounter>get(CopycatCounter.class, name, () -> {
+      ReadConsistency consistency = config.getCounterReadConsistency();
+      return open("open.counter", () -> copycat.atomicLong(name, new AsyncAtomicLongConfig()
+        .withConsistency(consistency.consistency())
+        .withLog(log)).open())
+        .thenApply(counter -> {
+          CounterShard shard = null;
+          if (config.getCounterMode() == CounterMode.SHARDED) {
+            shard = new CounterShard(counter, scheduler, config.getCounterFlushInterval());
+            shards.add(shard);
+          }
+          return new CopycatCounter(counter, shard, readStats.get(consistency), metrics);
+        });
+    }).whenComplete(new Completion<Counter>(resultHandler, metrics));
+  }
+
+  /**
+   * Returns the encoded size of a key or value in bytes.
+   */
+  private long encodedSize(Object object) {
+    return serializer.writeObject(object).remaining();
+  }
+
+  /**
+   * Opens a resource, waiting for a free slot if the maximum number of concurrent opens has been reached.
+   */
+  private <T> CompletableFuture<T> open(String operation, Supplier<CompletableFuture<T>> supplier) {
+    return tracker.track(operation, () -> opens.submit(supplier));
   }
 
   @Override
@@ -120,7 +444,7 @@ public class CopycatClusterManager implements ClusterManager {
 
   @Override
   public List<String> getNodes() {
-    return copycat.cluster().members().stream().map(Member::uri).collect(Collectors.toList());
+    return membership.members();
   }
 
   @Override
@@ -132,40 +456,76 @@ public class CopycatClusterManager implements ClusterManager {
    * Handles a membership event.
    */
   private void handleMembershipEvent(MembershipEvent event) {
+    // The member instance is used as the member's identity, so a member that's re-added to the cluster after a restart
+    // is reported as having left even if it rejoins within the suspicion timeout.
     if (event.type() == MembershipEvent.Type.JOIN) {
-      listener.nodeAdded(event.member().uri());
+      membership.joined(event.member().uri(), event.member());
     } else if (event.type() == MembershipEvent.Type.LEAVE) {
-      listener.nodeLeft(event.member().uri());
+      membership.left(event.member().uri());
+    }
+  }
+
+  /**
+   * Handles a batch of membership changes.
+   */
+  private void handleMembershipChanges(Map<String, Boolean> changes) {
+    for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+      if (change.getValue()) {
+        metrics.memberJoined(change.getKey());
+        if (listener != null) {
+          listener.nodeAdded(change.getKey());
+        }
+      } else {
+        metrics.memberLeft(change.getKey());
+        if (listener != null) {
+          listener.nodeLeft(change.getKey());
+        }
+      }
     }
   }
 
   @Override
   public void join(Handler<AsyncResult<Void>> resultHandler) {
-    copycat.open().whenComplete((result, error) -> {
+    Completion<Void> completion = new Completion<>(resultHandler, metrics);
+    CompletableFuture<?> future = embedded && copycat.isOpen()
+      ? CompletableFuture.completedFuture(null) : copycat.open();
+    future.whenComplete((result, error) -> {
       if (error == null) {
-        copycat.cluster().addMembershipListener(this::handleMembershipEvent);
-        Future.<Void>succeededFuture().setHandler(resultHandler);
+        membership.reset(copycat.cluster().members().stream()
+          .collect(Collectors.toMap(Member::uri, Function.identity(), (a, b) -> a, LinkedHashMap::new)));
+        copycat.cluster().addMembershipListener(membershipListener);
+        active = true;
+        completion.succeed(null);
       } else {
-        Future.<Void>failedFuture(error).setHandler(resultHandler);
+        completion.fail(error);
       }
     });
   }
 
   @Override
   public void leave(Handler<AsyncResult<Void>> resultHandler) {
-    copycat.cluster().removeMembershipListener(this::handleMembershipEvent);
-    copycat.close().whenComplete((result, error) -> {
-      if (error == null) {
-        Future.<Void>succeededFuture().setHandler(resultHandler);
-      } else {
-        Future.<Void>failedFuture(error).setHandler(resultHandler);
-      }
-    });
+    Completion<Void> completion = new Completion<>(resultHandler, metrics);
+    active = false;
+    copycat.cluster().removeMembershipListener(membershipListener);
+    membership.close();
+    // Stop expiring keys, leaving keys with pending TTLs in place, and flush any pending counter deltas before closing
+    // the cluster so that local updates aren't lost.
+    asyncMaps.forEach(CopycatAsyncMap::close);
+    List<CompletableFuture<?>> flushes = new ArrayList<>();
+    shards.forEach(shard -> flushes.add(shard.close()));
+    CompletableFuture.allOf(flushes.toArray(new CompletableFuture[flushes.size()]))
+      .handle((result, error) -> null)
+      .thenCompose(v -> embedded ? CompletableFuture.<Void>completedFuture(null) : copycat.close())
+      .whenComplete((result, error) -> {
+        registry.close();
+        scheduler.shutdown();
+        completion.accept(null, error);
+      });
   }
 
   @Override
   public boolean isActive() {
-    return copycat.isOpen();
+    return active && copycat.isOpen();
   }
 
 }
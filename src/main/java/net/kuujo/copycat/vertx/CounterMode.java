@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx;
+
+/**
+ * Counter mode.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public enum CounterMode {
+
+  /**
+   * Every counter update is committed to the cluster before it completes.
+   */
+  EXACT,
+
+  /**
+   * Counter updates are accumulated in a node-local shard and periodically flushed to the cluster in a single command.
+   * Updates complete immediately with the node's current estimate of the counter value. Reads and compare-and-set
+   * operations flush the local shard first and are exact with respect to updates made through the local node.
+   */
+  SHARDED
+
+}
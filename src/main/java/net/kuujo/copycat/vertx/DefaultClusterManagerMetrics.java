@@ -0,0 +1,203 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx;
+
+import net.kuujo.copycat.vertx.impl.LatencyHistogram;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default cluster manager metrics.<p>
+ *
+ * Latencies are recorded per operation name into lock-free histograms along with operation, in-flight and error
+ * counts. The delay between the completion of operations and the dispatch of their result handlers on Vert.x contexts
+ * is recorded into a single histogram. Metrics can be queried at runtime via {@link CopycatClusterManager#metrics()}.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class DefaultClusterManagerMetrics implements ClusterManagerMetrics {
+  private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+  private final LatencyHistogram dispatch = new LatencyHistogram();
+  private final LongAdder joins = new LongAdder();
+  private final LongAdder leaves = new LongAdder();
+
+  @Override
+  public long operationStarted(String operation) {
+    operation(operation).inFlight.increment();
+    return System.nanoTime();
+  }
+
+  @Override
+  public void operationCompleted(String operation, long startTime, Throwable error) {
+    OperationMetrics metrics = operation(operation);
+    metrics.inFlight.decrement();
+    metrics.latency.record(System.nanoTime() - startTime);
+    if (error != null) {
+      metrics.errors.increment();
+    }
+  }
+
+  @Override
+  public void handlerDispatched(long delay) {
+    dispatch.record(delay);
+  }
+
+  @Override
+  public void memberJoined(String member) {
+    joins.increment();
+  }
+
+  @Override
+  public void memberLeft(String member) {
+    leaves.increment();
+  }
+
+  /**
+   * Returns the metrics for the given operation, creating them if necessary.
+   *
+   * @param operation The operation name.
+   * @return The operation metrics.
+   */
+  public OperationMetrics operation(String operation) {
+    OperationMetrics metrics = operations.get(operation);
+    if (metrics == null) {
+      metrics = operations.computeIfAbsent(operation, o -> new OperationMetrics());
+    }
+    return metrics;
+  }
+
+  /**
+   * Returns the metrics for all operations that have been recorded.
+   *
+   * @return A map of operation names to operation metrics.
+   */
+  public Map<String, OperationMetrics> operations() {
+    return Collections.unmodifiableMap(operations);
+  }
+
+  /**
+   * Returns the number of result handlers that have been dispatched.
+   *
+   * @return The number of handler dispatches.
+   */
+  public long dispatches() {
+    return dispatch.count();
+  }
+
+  /**
+   * Returns the mean delay between the completion of an operation and the dispatch of its result handler.
+   *
+   * @return The mean handler dispatch delay in nanoseconds.
+   */
+  public long meanDispatchLatency() {
+    return dispatch.mean();
+  }
+
+  /**
+   * Returns the maximum delay between the completion of an operation and the dispatch of its result handler.
+   *
+   * @return The maximum handler dispatch delay in nanoseconds.
+   */
+  public long maxDispatchLatency() {
+    return dispatch.max();
+  }
+
+  /**
+   * Returns the handler dispatch delay at the given percentile.
+   *
+   * @param percentile The percentile, between {@code 0} and {@code 100}.
+   * @return The handler dispatch delay in nanoseconds.
+   */
+  public long dispatchLatency(double percentile) {
+    return dispatch.percentile(percentile);
+  }
+
+  /**
+   * Returns the number of members that have joined the cluster.
+   *
+   * @return The number of member joins.
+   */
+  public long joins() {
+    return joins.sum();
+  }
+
+  /**
+   * Returns the number of members that have left the cluster.
+   *
+   * @return The number of member leaves.
+   */
+  public long leaves() {
+    return leaves.sum();
+  }
+
+  /**
+   * Metrics for a single operation.
+   */
+  public static class OperationMetrics {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Returns the number of completed operations.
+     */
+    public long count() {
+      return latency.count();
+    }
+
+    /**
+     * Returns the number of operations currently in flight.
+     */
+    public long inFlight() {
+      return inFlight.sum();
+    }
+
+    /**
+     * Returns the number of failed operations.
+     */
+    public long errors() {
+      return errors.sum();
+    }
+
+    /**
+     * Returns the mean operation latency in nanoseconds.
+     */
+    public long meanLatency() {
+      return latency.mean();
+    }
+
+    /**
+     * Returns the maximum operation latency in nanoseconds.
+     */
+    public long maxLatency() {
+      return latency.max();
+    }
+
+    /**
+     * Returns the operation latency at the given percentile in nanoseconds.
+     *
+     * @param percentile The percentile, between {@code 0} and {@code 100}.
+     */
+    public long latency(double percentile) {
+      return latency.percentile(percentile);
+    }
+  }
+
+}
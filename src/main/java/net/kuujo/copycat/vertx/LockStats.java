@@ -0,0 +1,172 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx;
+
+import net.kuujo.copycat.vertx.impl.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contention statistics for a single lock on the local node.<p>
+ *
+ * Wait times are measured from the time a lock is requested until it's granted, and hold times from the time it's
+ * granted until it's released. Statistics are retained when an idle lock is closed, so they cover every use of the
+ * lock since the cluster manager was created.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class LockStats {
+  private final LatencyHistogram waitTime = new LatencyHistogram();
+  private final LatencyHistogram holdTime = new LatencyHistogram();
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder unlockFailures = new LongAdder();
+  private final LongAccumulator maxWaiters = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records the time a granted lock request waited.
+   *
+   * @param time The wait time in nanoseconds.
+   */
+  public void recordWait(long time) {
+    waitTime.record(time);
+  }
+
+  /**
+   * Records the time a lock was held.
+   *
+   * @param time The hold time in nanoseconds.
+   */
+  public void recordHold(long time) {
+    holdTime.record(time);
+  }
+
+  /**
+   * Records a lock request that timed out.
+   */
+  public void recordTimeout() {
+    timeouts.increment();
+  }
+
+  /**
+   * Records a failure to release the lock to the cluster after all retries.
+   */
+  public void recordUnlockFailure() {
+    unlockFailures.increment();
+  }
+
+  /**
+   * Records the number of requests queued for the lock.
+   *
+   * @param waiters The number of queued requests.
+   */
+  public void recordWaiters(int waiters) {
+    maxWaiters.accumulate(waiters);
+  }
+
+  /**
+   * Returns the number of times the lock was granted.
+   *
+   * @return The number of times the lock was granted.
+   */
+  public long acquisitions() {
+    return waitTime.count();
+  }
+
+  /**
+   * Returns the number of lock requests that timed out.
+   *
+   * @return The number of lock requests that timed out.
+   */
+  public long timeouts() {
+    return timeouts.sum();
+  }
+
+  /**
+   * Returns the number of times the lock couldn't be released to the cluster.
+   *
+   * @return The number of failed releases.
+   */
+  public long unlockFailures() {
+    return unlockFailures.sum();
+  }
+
+  /**
+   * Returns the maximum number of requests that were queued for the lock at once.
+   *
+   * @return The maximum number of queued requests.
+   */
+  public long maxWaiters() {
+    return maxWaiters.get();
+  }
+
+  /**
+   * Returns the mean wait time in nanoseconds.
+   *
+   * @return The mean wait time in nanoseconds.
+   */
+  public long meanWaitTime() {
+    return waitTime.mean();
+  }
+
+  /**
+   * Returns the maximum wait time in nanoseconds.
+   *
+   * @return The maximum wait time in nanoseconds.
+   */
+  public long maxWaitTime() {
+    return waitTime.max();
+  }
+
+  /**
+   * Returns the wait time at the given percentile in nanoseconds.
+   *
+   * @param percentile The percentile, between {@code 0} and {@code 100}.
+   * @return The wait time at the percentile in nanoseconds.
+   */
+  public long waitTime(double percentile) {
+    return waitTime.percentile(percentile);
+  }
+
+  /**
+   * Returns the mean hold time in nanoseconds.
+   *
+   * @return The mean hold time in nanoseconds.
+   */
+  public long meanHoldTime() {
+    return holdTime.mean();
+  }
+
+  /**
+   * Returns the maximum hold time in nanoseconds.
+   *
+   * @return The maximum hold time in nanoseconds.
+   */
+  public long maxHoldTime() {
+    return holdTime.max();
+  }
+
+  /**
+   * Returns the hold time at the given percentile in nanoseconds.
+   *
+   * @param percentile The percentile, between {@code 0} and {@code 100}.
+   * @return The hold time at the percentile in nanoseconds.
+   */
+  public long holdTime(double percentile) {
+    return holdTime.percentile(percentile);
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node-local memory budget.<p>
+ *
+ * Sizes are estimated from the encoded size of keys and values rather than measured on the heap, so the budget bounds
+ * the amount of data that's held rather than its exact footprint.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class MemoryBudget {
+  private final long limit;
+  private final AtomicLong used = new AtomicLong();
+  private final LongAdder rejected = new LongAdder();
+
+  public MemoryBudget(long limit) {
+    this.limit = limit;
+  }
+
+  /**
+   * Reserves memory if the reservation fits within the budget.
+   *
+   * @param bytes The number of bytes to reserve.
+   * @return Whether the memory was reserved.
+   */
+  public boolean reserve(long bytes) {
+    if (limit <= 0) {
+      used.addAndGet(bytes);
+      return true;
+    }
+
+    long current;
+    do {
+      current = used.get();
+      if (current + bytes > limit) {
+        rejected.increment();
+        return false;
+      }
+    } while (!used.compareAndSet(current, current + bytes));
+    return true;
+  }
+
+  /**
+   * Returns a boolean indicating whether a reservation would currently fit within the budget.
+   *
+   * @param bytes The number of bytes to reserve.
+   * @return Whether the reservation would fit.
+   */
+  public boolean fits(long bytes) {
+    return limit <= 0 || used.get() + bytes <= limit;
+  }
+
+  /**
+   * Releases reserved memory.
+   *
+   * @param bytes The number of bytes to release.
+   */
+  public void release(long bytes) {
+    used.addAndGet(-bytes);
+  }
+
+  /**
+   * Returns the budget limit in bytes.
+   *
+   * @return The budget limit in bytes or {@code 0} if the budget is unlimited.
+   */
+  public long limit() {
+    return limit;
+  }
+
+  /**
+   * Returns the number of bytes currently reserved.
+   *
+   * @return The number of bytes currently reserved.
+   */
+  public long used() {
+    return used.get();
+  }
+
+  /**
+   * Returns the number of reservations that were rejected because they would have exceeded the budget.
+   *
+   * @return The number of rejected reservations.
+   */
+  public long rejected() {
+    return rejected.sum();
+  }
+
+}
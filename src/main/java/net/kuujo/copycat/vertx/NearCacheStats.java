@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx;
+
+/**
+ * Near-cache statistics.<p>
+ *
+ * Statistics cover every lookup served by a multimap's node-local near-cache since the cluster manager was created.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public interface NearCacheStats {
+
+  /**
+   * Returns the memory budget of the cache.<p>
+   *
+   * The number of bytes in use is the estimated size of all cached entries, and the number of rejected reservations is
+   * the number of entries that were not cached because they were larger than the whole budget.
+   *
+   * @return The cache memory budget.
+   */
+  MemoryBudget memory();
+
+  /**
+   * Returns the number of cached entries.
+   *
+   * @return The number of cached entries.
+   */
+  int size();
+
+  /**
+   * Returns the number of lookups that were served by a fresh cache entry.
+   *
+   * @return The number of cache hits.
+   */
+  long hits();
+
+  /**
+   * Returns the number of lookups that were not served by the cache.
+   *
+   * @return The number of cache misses.
+   */
+  long misses();
+
+  /**
+   * Returns the number of lookups that were served by an entry older than the cache TTL.
+   *
+   * @return The number of stale cache hits.
+   */
+  long staleHits();
+
+  /**
+   * Returns the number of entries that were evicted to make room for other entries.
+   *
+   * @return The number of evicted entries.
+   */
+  long evictions();
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx;
+
+import net.kuujo.copycat.protocol.Consistency;
+
+/**
+ * Read consistency level.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public enum ReadConsistency {
+
+  /**
+   * Reads are linearizable. Each read is confirmed with a quorum of the cluster.
+   */
+  LINEARIZABLE(Consistency.STRONG),
+
+  /**
+   * Reads are served by the leader without contacting a quorum as long as the leader's lease is valid.
+   */
+  LEASE(Consistency.DEFAULT),
+
+  /**
+   * Reads are served from the local node's state machine and may be stale.
+   */
+  SEQUENTIAL(Consistency.WEAK);
+
+  private final Consistency consistency;
+
+  private ReadConsistency(Consistency consistency) {
+    this.consistency = consistency;
+  }
+
+  /**
+   * Returns the Copycat consistency level for the read consistency.
+   *
+   * @return The Copycat consistency level.
+   */
+  public Consistency consistency() {
+    return consistency;
+  }
+
+}
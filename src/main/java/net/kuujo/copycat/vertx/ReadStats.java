@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read statistics for a single read consistency level.<p>
+ *
+ * Counts and latencies are recorded for all reads made at the consistency level, so that the latency of weaker
+ * consistency levels can be compared with that of {@link ReadConsistency#LINEARIZABLE} reads. Copycat query responses
+ * don't carry the index at which they were evaluated, so how far behind the leader an individual read was can't be
+ * observed. {@link #isConfirmed()} only indicates whether reads at the level are confirmed by a quorum.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class ReadStats {
+  private final boolean confirmed;
+  private final LongAdder reads = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder totalLatency = new LongAdder();
+  private final LongAccumulator maxLatency = new LongAccumulator(Math::max, 0);
+
+  public ReadStats(boolean confirmed) {
+    this.confirmed = confirmed;
+  }
+
+  /**
+   * Returns the current time to be passed to {@link #recordRead(long, boolean)} once the read completes.
+   *
+   * @return The read start time in nanoseconds.
+   */
+  public long startRead() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Records a completed read.
+   *
+   * @param startTime The time at which the read was started.
+   * @param succeeded Whether the read succeeded.
+   */
+  public void recordRead(long startTime, boolean succeeded) {
+    long latency = System.nanoTime() - startTime;
+    reads.increment();
+    totalLatency.add(latency);
+    maxLatency.accumulate(latency);
+    if (!succeeded) {
+      failures.increment();
+    }
+  }
+
+  /**
+   * Returns the number of reads.
+   *
+   * @return The number of reads.
+   */
+  public long reads() {
+    return reads.sum();
+  }
+
+  /**
+   * Returns the number of failed reads.
+   *
+   * @return The number of failed reads.
+   */
+  public long failures() {
+    return failures.sum();
+  }
+
+  /**
+   * Returns the number of successful reads.
+   *
+   * @return The number of successful reads.
+   */
+  public long successes() {
+    return reads.sum() - failures.sum();
+  }
+
+  /**
+   * Returns a boolean indicating whether reads at the consistency level are confirmed by a quorum.
+   *
+   * @return Whether reads are confirmed by a quorum.
+   */
+  public boolean isConfirmed() {
+    return confirmed;
+  }
+
+  /**
+   * Returns the mean read latency in nanoseconds.
+   *
+   * @return The mean read latency in nanoseconds.
+   */
+  public long meanLatency() {
+    long count = reads.sum();
+    return count > 0 ? totalLatency.sum() / count : 0;
+  }
+
+  /**
+   * Returns the maximum read latency in nanoseconds.
+   *
+   * @return The maximum read latency in nanoseconds.
+   */
+  public long maxLatency() {
+    return maxLatency.get();
+  }
+
+}
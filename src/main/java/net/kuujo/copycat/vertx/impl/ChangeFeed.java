@@ -0,0 +1,262 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.event.EventLog;
+import net.kuujo.copycat.vertx.ChangeEvent;
+import net.kuujo.copycat.vertx.ClusterManagerMetrics;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Map or multimap change feed.<p>
+ *
+ * Changes are committed to a replicated event log by the writing node once the write they describe has been
+ * committed. Every node sees the same changes in the feed in the same order, and each change is identified by its index
+ * in the log, but changes from different nodes may be ordered differently in the feed than in the map, and a change is
+ * lost if the writing node fails before publishing it. Streams read the log by index, and a stream that has caught up
+ * with the log is registered with the feed until it's woken up by the next change delivered to the local node.<p>
+ *
+ * When the feed is opened, it finds the head of the log once, so streams can start at the next change without
+ * probing the log. The head is then kept up to date by changes committed and read through the feed. Old changes may
+ * be compacted out of the log. A stream that finds no change at an index behind the head seeks forward to the oldest
+ * change that's still retained by a binary search up to the head, assuming that compaction only ever removes a prefix
+ * of the log.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class ChangeFeed<K, V> {
+  private static final long MAX_PROBE_DISTANCE = 1L << 40;
+
+  private final EventLog<ChangeEvent<K, V>> log;
+  private final ClusterManagerMetrics metrics;
+  private final Set<ChangeStream<K, V>> streams = ConcurrentHashMap.newKeySet();
+  private final Set<Consumer<ChangeEvent<K, V>>> listeners = ConcurrentHashMap.newKeySet();
+  private final AtomicLong signals = new AtomicLong();
+  private final AtomicLong lastIndex = new AtomicLong();
+
+  public ChangeFeed(EventLog<ChangeEvent<K, V>> log, ClusterManagerMetrics metrics) {
+    this.log = log;
+    this.metrics = metrics;
+    log.consumer(event -> {
+      for (Consumer<ChangeEvent<K, V>> listener : listeners) {
+        listener.accept(event);
+      }
+      signal();
+    });
+  }
+
+  /**
+   * Opens the feed, finding the head of the log.<p>
+   *
+   * A failure to find the head doesn't fail the feed, but streams that start at the next change then start at the
+   * oldest change that's still retained.
+   *
+   * @return A future to be completed with the feed once the head has been found.
+   */
+  public CompletableFuture<ChangeFeed<K, V>> open() {
+    return head().handle((head, error) -> this);
+  }
+
+  /**
+   * Publishes a change to the feed.<p>
+   *
+   * A failure to publish a change doesn't fail the write that was made, so failures are only recorded in the metrics.
+   *
+   * @param type The change type.
+   * @param key The key that changed.
+   * @param value The value that was put or removed.
+   */
+  public void publish(ChangeEvent.Type type, K key, V value) {
+    long startTime = metrics.operationStarted("feed.publish");
+    log.commit(new ChangeEvent<>(type, key, value)).whenComplete((index, error) -> {
+      metrics.operationCompleted("feed.publish", startTime, error);
+      // Wake up streams again once the head is known, since a stream that was woken up by the change before its
+      // index was known may not have been able to seek past a compacted index.
+      if (error == null && lastIndex.getAndAccumulate(index, Math::max) < index) {
+        signal();
+      }
+    });
+  }
+
+  /**
+   * Opens a stream of changes starting with the next change after the head of the feed.
+   *
+   * @return A read stream of changes.
+   */
+  public ChangeStream<K, V> stream() {
+    return new ChangeStream<>(this, lastIndex.get() + 1);
+  }
+
+  /**
+   * Opens a stream of changes starting at the given index.
+   *
+   * @param fromIndex The index of the first change to read.
+   * @return A read stream of changes.
+   */
+  public ChangeStream<K, V> stream(long fromIndex) {
+    if (fromIndex < 1)
+      throw new IllegalArgumentException("fromIndex must be positive");
+    return new ChangeStream<>(this, fromIndex);
+  }
+
+  /**
+   * Reads the change at the given index.
+   *
+   * @return The change at the index or {@code null} if no change has been committed at the index yet.
+   */
+  CompletableFuture<ChangeEvent<K, V>> read(long index) {
+    return log.get(index).thenApply(event -> {
+      if (event == null) {
+        return null;
+      }
+      lastIndex.accumulateAndGet(index, Math::max);
+      return new ChangeEvent<>(index, event.type(), event.key(), event.value());
+    });
+  }
+
+  /**
+   * Returns the highest index at which a change is known to have been committed.
+   */
+  long lastIndex() {
+    return lastIndex.get();
+  }
+
+  /**
+   * Finds the oldest retained change after an index at which no change was found.<p>
+   *
+   * If a later change is known, the oldest retained change is found by a binary search up to it. Otherwise, indexes
+   * at exponentially increasing distances are probed until a change is found.
+   *
+   * @return The index of the oldest retained change after the index or {@code 0} if no later change was found.
+   */
+  CompletableFuture<Long> seek(long index) {
+    long last = lastIndex.get();
+    if (last > index) {
+      return first(index, last);
+    }
+    return probe(index, 1);
+  }
+
+  /**
+   * Finds the head of the log.<p>
+   *
+   * The oldest retained change is found first, and indexes at exponentially increasing distances after it are then
+   * probed until one is missing. Finding the head of a log of {@code n} changes costs about {@code 2 log2(n)} reads,
+   * and finding that a log is empty costs one read for each probe distance. Retained changes are only found if a
+   * probed index falls among them, which is guaranteed as long as no more changes have been compacted than are
+   * retained.
+   *
+   * @return The index of the last change in the log or {@code 0} if the log is empty.
+   */
+  private CompletableFuture<Long> head() {
+    return probe(0, 1).thenCompose(first -> first > 0 ? gallop(first, 1) : CompletableFuture.completedFuture(0L))
+      .thenApply(head -> lastIndex.accumulateAndGet(head, Math::max));
+  }
+
+  /**
+   * Probes for changes at exponentially increasing distances after an index at which a change is present.
+   */
+  private CompletableFuture<Long> gallop(long present, long distance) {
+    if (distance > MAX_PROBE_DISTANCE) {
+      return CompletableFuture.completedFuture(present);
+    }
+    long probe = present + distance;
+    return log.get(probe).thenCompose(event -> event != null ? gallop(probe, distance * 2) : last(present, probe));
+  }
+
+  /**
+   * Finds the last change in a range of indexes in which the lower index is present and the upper index is missing.
+   */
+  private CompletableFuture<Long> last(long present, long missing) {
+    if (missing - present <= 1) {
+      return CompletableFuture.completedFuture(present);
+    }
+    long middle = present + (missing - present) / 2;
+    return log.get(middle).thenCompose(event -> event != null ? last(middle, missing) : last(present, middle));
+  }
+
+  /**
+   * Probes for a change at an exponentially increasing distance from an index.
+   */
+  private CompletableFuture<Long> probe(long index, long distance) {
+    if (distance > MAX_PROBE_DISTANCE) {
+      return CompletableFuture.completedFuture(0L);
+    }
+    long probe = index + distance;
+    return log.get(probe).thenCompose(event -> event != null ? first(index, probe) : probe(index, distance * 2));
+  }
+
+  /**
+   * Finds the first retained change in a range of indexes in which the lower index is missing and the upper index is
+   * present.
+   */
+  private CompletableFuture<Long> first(long missing, long present) {
+    if (present - missing <= 1) {
+      return CompletableFuture.completedFuture(present);
+    }
+    long middle = missing + (present - missing) / 2;
+    return log.get(middle).thenCompose(event -> event != null ? first(missing, middle) : first(middle, present));
+  }
+
+  /**
+   * Returns the number of changes that have been delivered to the local node.
+   */
+  long signals() {
+    return signals.get();
+  }
+
+  /**
+   * Registers a listener to be called with each change that's delivered to the local node.<p>
+   *
+   * Listeners are called before streams are woken up. Changes passed to listeners don't carry an index.
+   */
+  void listen(Consumer<ChangeEvent<K, V>> listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Registers a stream to be woken up when the next change is delivered.
+   */
+  void register(ChangeStream<K, V> stream) {
+    streams.add(stream);
+  }
+
+  /**
+   * Unregisters a stream.
+   */
+  void unregister(ChangeStream<K, V> stream) {
+    streams.remove(stream);
+  }
+
+  /**
+   * Wakes up all streams waiting for a change.<p>
+   *
+   * Streams unregister themselves when they're woken up, so only streams that are waiting are ever registered and a
+   * paused or abandoned stream is never retained by the feed.
+   */
+  private void signal() {
+    signals.incrementAndGet();
+    for (ChangeStream<K, V> stream : streams) {
+      stream.signal();
+    }
+  }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.streams.ReadStream;
+import net.kuujo.copycat.vertx.ChangeEvent;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Change feed read stream.<p>
+ *
+ * Changes are read from the feed one index at a time, and the next change is only read once the current change has
+ * been handled, so a paused stream stops reading until it's resumed. Once the stream has caught up with the feed it
+ * registers with the feed to be woken up by the next change delivered to the local node, and it's unregistered again
+ * when it's woken up, so the feed only retains streams that are waiting for a change. The stream never ends, and it
+ * stops reading when its handler is unset. Handlers are called on the Vert.x context on which the stream was
+ * created.<p>
+ *
+ * If no change is found at an index behind the head of the feed because it was compacted, the stream seeks forward to
+ * the oldest change that's still retained. If the stream is repeatedly woken up without finding a change at its
+ * index, which happens when the index was compacted after the head was last updated, it probes the log for the
+ * oldest retained change after its index.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class ChangeStream<K, V> implements ReadStream<ChangeEvent<K, V>> {
+  private static final int MAX_STALLS = 2;
+
+  private final ChangeFeed<K, V> feed;
+  private final Context context;
+  private long index;
+  private Handler<ChangeEvent<K, V>> handler;
+  private Handler<Throwable> exceptionHandler;
+  private boolean paused;
+  private boolean reading;
+  private boolean waiting;
+  private int stalls;
+  private boolean failed;
+
+  public ChangeStream(ChangeFeed<K, V> feed, long fromIndex) {
+    this.feed = feed;
+    this.index = fromIndex;
+    this.context = Vertx.currentContext();
+  }
+
+  @Override
+  public synchronized ChangeStream<K, V> exceptionHandler(Handler<Throwable> handler) {
+    this.exceptionHandler = handler;
+    return this;
+  }
+
+  @Override
+  public ChangeStream<K, V> handler(Handler<ChangeEvent<K, V>> handler) {
+    boolean waiting;
+    synchronized (this) {
+      this.handler = handler;
+      waiting = this.waiting;
+      if (handler == null) {
+        this.waiting = false;
+      }
+    }
+    if (handler != null) {
+      read(false);
+    } else if (waiting) {
+      feed.unregister(this);
+    }
+    return this;
+  }
+
+  @Override
+  public synchronized ChangeStream<K, V> pause() {
+    paused = true;
+    return this;
+  }
+
+  @Override
+  public ChangeStream<K, V> resume() {
+    synchronized (this) {
+      paused = false;
+    }
+    read(false);
+    return this;
+  }
+
+  @Override
+  public ChangeStream<K, V> endHandler(Handler<Void> handler) {
+    // Change feeds never end.
+    return this;
+  }
+
+  /**
+   * Wakes up the stream if it's waiting for a change.
+   */
+  void signal() {
+    synchronized (this) {
+      if (!waiting) {
+        return;
+      }
+      waiting = false;
+    }
+    feed.unregister(this);
+    read(true);
+  }
+
+  /**
+   * Reads changes from the current index until the stream is paused, the stream is already reading, or a read doesn't
+   * complete immediately.<p>
+   *
+   * Reads that complete immediately are handled in a loop rather than recursively so that catching up with a long
+   * feed doesn't overflow the stack.
+   *
+   * @param woken Whether the read was triggered by a change delivered to the local node.
+   */
+  private void read(boolean woken) {
+    Boolean next = woken;
+    while (next != null) {
+      boolean wokenRead = next;
+      long index;
+      long signals;
+      synchronized (this) {
+        if (paused || handler == null || reading || waiting || failed) {
+          return;
+        }
+        reading = true;
+        index = this.index;
+        signals = feed.signals();
+      }
+
+      CompletableFuture<ChangeEvent<K, V>> future = feed.read(index);
+      if (!future.isDone() || (context != null && Vertx.currentContext() != context)) {
+        future.whenComplete((event, error) -> Completion.runOnContext(context, () -> {
+          Boolean again = handleChange(event, error, signals, wokenRead);
+          if (again != null) {
+            read(again);
+          }
+        }));
+        return;
+      }
+
+      ChangeEvent<K, V> event = null;
+      Throwable error = null;
+      try {
+        event = future.join();
+      } catch (CompletionException | CancellationException e) {
+        error = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+      }
+      next = handleChange(event, error, signals, wokenRead);
+    }
+  }
+
+  /**
+   * Handles a change read from the feed.<p>
+   *
+   * If no change has been committed at the current index, the index is read again if a change was delivered while
+   * the read was in progress. Otherwise, the stream either seeks forward to the oldest retained change or waits for
+   * the next change.
+   *
+   * @return Whether the next read was triggered by a delivered change, or {@code null} if the stream should stop
+   *         reading.
+   */
+  private Boolean handleChange(ChangeEvent<K, V> event, Throwable error, long signals, boolean woken) {
+    Handler<ChangeEvent<K, V>> handler;
+    Handler<Throwable> exceptionHandler = null;
+    long index;
+    boolean seek = false;
+    boolean wait = false;
+    synchronized (this) {
+      reading = false;
+      handler = this.handler;
+      index = this.index;
+      if (error != null) {
+        failed = true;
+        exceptionHandler = this.exceptionHandler;
+      } else if (event == null) {
+        if (woken) {
+          stalls++;
+        }
+        if (paused || handler == null) {
+          return null;
+        }
+        if (feed.signals() == signals) {
+          if (feed.lastIndex() > index || stalls >= MAX_STALLS) {
+            stalls = 0;
+            reading = true;
+            seek = true;
+          } else {
+            waiting = true;
+            wait = true;
+          }
+        }
+      } else {
+        stalls = 0;
+        if (handler != null) {
+          this.index++;
+        }
+      }
+    }
+
+    if (error != null) {
+      fail(error, exceptionHandler);
+      return null;
+    } else if (seek) {
+      feed.seek(index).whenComplete((next, seekError) -> Completion.runOnContext(context,
+        () -> handleSeek(next, seekError, signals)));
+      return null;
+    } else if (wait) {
+      await(signals);
+      return null;
+    } else if (event != null) {
+      if (handler != null) {
+        handler.handle(event);
+      }
+      return false;
+    } else {
+      // A change was delivered while the index was being read, so read it again.
+      return true;
+    }
+  }
+
+  /**
+   * Handles the result of a seek for the oldest retained change.
+   */
+  private void handleSeek(Long next, Throwable error, long signals) {
+    Handler<Throwable> exceptionHandler = null;
+    boolean wait = false;
+    synchronized (this) {
+      reading = false;
+      if (error != null) {
+        failed = true;
+        exceptionHandler = this.exceptionHandler;
+      } else if (next != 0) {
+        index = next;
+      } else if (feed.signals() == signals && !paused && handler != null) {
+        // No later change was found, so wait unless a change was delivered while the stream was seeking.
+        waiting = true;
+        wait = true;
+      }
+    }
+
+    if (error != null) {
+      fail(error, exceptionHandler);
+    } else if (wait) {
+      await(signals);
+    } else {
+      read(next == 0);
+    }
+  }
+
+  /**
+   * Registers the stream to be woken up by the next change.<p>
+   *
+   * A change delivered after the stream last read from the feed but before it was registered wakes the stream up
+   * immediately.
+   */
+  private void await(long signals) {
+    feed.register(this);
+    if (feed.signals() != signals) {
+      signal();
+    }
+  }
+
+  /**
+   * Fails the stream.
+   */
+  private void fail(Throwable error, Handler<Throwable> exceptionHandler) {
+    if (exceptionHandler != null) {
+      exceptionHandler.handle(error);
+    }
+  }
+
+}
@@ -17,46 +17,71 @@ package net.kuujo.copycat.vertx.impl;
 
 import io.vertx.core.spi.cluster.ChoosableIterable;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.NoSuchElementException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 /**
- * Choosable set implementation.
+ * Choosable set implementation.<p>
+ *
+ * Values are chosen round-robin using a rotation counter that may be shared by all collections for the same key, so
+ * that the rotation isn't reset each time the values are looked up. If a locality predicate is provided, values local
+ * to the node are chosen in preference to remote values. The collection is safe for concurrent use.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public class ChoosableCollection<T> implements ChoosableIterable<T> {
-  private final Collection<T> collection;
-  private Iterator<T> iterator;
+  private final List<T> values;
+  private final List<T> candidates;
+  private final AtomicInteger rotation;
 
   public ChoosableCollection(Collection<T> collection) {
-    this.collection = collection;
+    this(collection, new AtomicInteger(), null);
+  }
+
+  public ChoosableCollection(Collection<T> collection, AtomicInteger rotation, Predicate<T> local) {
+    this.values = collection instanceof List ? (List<T>) collection : new ArrayList<>(collection);
+    this.candidates = local != null ? localValues(values, local) : values;
+    this.rotation = rotation;
+  }
+
+  /**
+   * Returns the values local to the node, or all values if there are no local values.
+   */
+  private static <T> List<T> localValues(List<T> values, Predicate<T> local) {
+    List<T> locals = null;
+    for (T value : values) {
+      if (local.test(value)) {
+        if (locals == null) {
+          locals = new ArrayList<>(1);
+        }
+        locals.add(value);
+      }
+    }
+    return locals != null ? locals : values;
   }
 
   @Override
   public boolean isEmpty() {
-    return collection.isEmpty();
+    return values.isEmpty();
   }
 
   @Override
   public T choose() {
-    if (!collection.isEmpty()) {
-      if (iterator == null || !iterator.hasNext()) {
-        iterator = collection.iterator();
-      }
-      try {
-        return iterator.next();
-      } catch (NoSuchElementException e) {
-        return null;
-      }
+    int size = candidates.size();
+    if (size == 0) {
+      return null;
     }
-    return null;
+    return candidates.get(Math.floorMod(rotation.getAndIncrement(), size));
   }
 
   @Override
   public Iterator<T> iterator() {
-    return collection.iterator();
+    return Collections.unmodifiableList(values).iterator();
   }
 
 }
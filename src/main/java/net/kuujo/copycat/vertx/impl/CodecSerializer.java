@@ -0,0 +1,220 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.util.serializer.Serializer;
+import net.kuujo.copycat.vertx.Codec;
+import net.kuujo.copycat.vertx.CodecRegistry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Codec registry serializer.<p>
+ *
+ * Values are written with a one byte codec identifier and a one byte flags field, followed by the encoded value.
+ * Values are encoded into a per-thread scratch buffer, so serializing a value allocates only the returned buffer.
+ * Encoded values at least as large as the compression threshold are deflated if that makes them smaller.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class CodecSerializer implements Serializer {
+  private static final int NULL_ID = 0;
+  private static final int SERIALIZABLE_ID = 1;
+  private static final byte COMPRESSED = 1;
+  private static final int HEADER_SIZE = 2;
+  private static final int INITIAL_BUFFER_SIZE = 256;
+  private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+  private static final ThreadLocal<ByteBuffer> BUFFERS =
+    ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+
+  private final CodecRegistry registry;
+  private final int compressionThreshold;
+
+  public CodecSerializer(CodecRegistry registry, int compressionThreshold) {
+    this.registry = registry;
+    this.compressionThreshold = compressionThreshold;
+  }
+
+  @Override
+  public ByteBuffer writeObject(Object object) {
+    int id = object != null ? registry.id(object.getClass()) : NULL_ID;
+    ByteBuffer buffer;
+    if (id >= 0) {
+      buffer = BUFFERS.get();
+      while (true) {
+        buffer.clear();
+        try {
+          encode(object, id, buffer);
+          break;
+        } catch (BufferOverflowException e) {
+          buffer = buffer(buffer.capacity() * 2);
+        }
+      }
+    } else {
+      // Values without a codec are serialized once and the scratch buffer is sized to fit them, rather than being
+      // serialized again each time the buffer overflows.
+      byte[] bytes = serialize(object);
+      buffer = BUFFERS.get();
+      if (buffer.capacity() < HEADER_SIZE + bytes.length) {
+        buffer = buffer(HEADER_SIZE + bytes.length);
+      }
+      buffer.clear();
+      buffer.put((byte) SERIALIZABLE_ID).put((byte) 0).put(bytes);
+    }
+    buffer.flip();
+
+    if (compressionThreshold > 0 && buffer.remaining() - HEADER_SIZE >= compressionThreshold) {
+      ByteBuffer compressed = compress(buffer);
+      if (compressed != null) {
+        return compressed;
+      }
+    }
+
+    ByteBuffer result = ByteBuffer.allocate(buffer.remaining());
+    result.put(buffer);
+    result.flip();
+    return result;
+  }
+
+  /**
+   * Allocates a scratch buffer, replacing the thread's pooled buffer unless the new buffer is too large to pool.
+   */
+  private static ByteBuffer buffer(int capacity) {
+    ByteBuffer buffer = ByteBuffer.allocate(capacity);
+    if (capacity <= MAX_POOLED_BUFFER_SIZE) {
+      BUFFERS.set(buffer);
+    }
+    return buffer;
+  }
+
+  /**
+   * Encodes a value with a codec and its header.
+   */
+  private void encode(Object object, int id, ByteBuffer buffer) {
+    buffer.put((byte) id).put((byte) 0);
+    if (object != null) {
+      registry.<Object>codec(id).encode(object, buffer);
+    }
+  }
+
+  /**
+   * Serializes a value without a codec with Java serialization.
+   */
+  private byte[] serialize(Object object) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(object);
+    } catch (IOException e) {
+      throw new IllegalStateException("failed to serialize " + object.getClass().getName(), e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Deflates an encoded value, returning {@code null} if compression doesn't reduce its size.
+   */
+  private ByteBuffer compress(ByteBuffer buffer) {
+    int length = buffer.remaining() - HEADER_SIZE;
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(buffer.array(), buffer.arrayOffset() + buffer.position() + HEADER_SIZE, length);
+      deflater.finish();
+      byte[] compressed = new byte[length];
+      int size = 0;
+      while (!deflater.finished() && size < compressed.length) {
+        size += deflater.deflate(compressed, size, compressed.length - size);
+      }
+      if (!deflater.finished() || size + 4 >= length) {
+        return null;
+      }
+
+      ByteBuffer result = ByteBuffer.allocate(HEADER_SIZE + 4 + size);
+      result.put(buffer.get(buffer.position())).put(COMPRESSED).putInt(length).put(compressed, 0, size);
+      result.flip();
+      return result;
+    } finally {
+      deflater.end();
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T readObject(ByteBuffer buffer) {
+    int id = buffer.get() & 0xff;
+    byte flags = buffer.get();
+    if ((flags & COMPRESSED) != 0) {
+      buffer = decompress(buffer);
+    }
+
+    if (id == NULL_ID) {
+      return null;
+    } else if (id == SERIALIZABLE_ID) {
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+        return (T) input.readObject();
+      } catch (IOException | ClassNotFoundException e) {
+        throw new IllegalStateException("failed to deserialize value", e);
+      }
+    }
+
+    Codec<T> codec = registry.codec(id);
+    if (codec == null) {
+      throw new IllegalStateException("no codec registered with id " + id);
+    }
+    return codec.decode(buffer);
+  }
+
+  /**
+   * Inflates a compressed value.
+   */
+  private ByteBuffer decompress(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    byte[] compressed = new byte[buffer.remaining()];
+    buffer.get(compressed);
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed);
+      byte[] bytes = new byte[length];
+      int size = 0;
+      while (size < length && !inflater.finished()) {
+        int inflated = inflater.inflate(bytes, size, length - size);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        size += inflated;
+      }
+      if (size != length) {
+        throw new IllegalStateException("corrupt compressed value");
+      }
+      return ByteBuffer.wrap(bytes);
+    } catch (DataFormatException e) {
+      throw new IllegalStateException("corrupt compressed value", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import net.kuujo.copycat.vertx.ClusterManagerMetrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+
+/**
+ * CompletableFuture to Vert.x handler adapter.<p>
+ *
+ * A completion captures the Vert.x context of the thread that creates it and, once completed, calls the handler on
+ * that context rather than on the thread that completed the future. If the completing thread is already running on the
+ * context, or if the completion was created outside a Vert.x context, the handler is called directly. The completion
+ * is itself the {@link AsyncResult} passed to the handler and the task run on the context, so completing a handler
+ * allocates nothing beyond the completion.<p>
+ *
+ * When created with {@link ClusterManagerMetrics}, a completion reports the time between the completion of the future
+ * and the call to the handler on its context, which grows when the context's event loop is busy.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class Completion<T> implements BiConsumer<T, Throwable>, AsyncResult<T>, Handler<Void> {
+  private final Context context;
+  private final Handler<AsyncResult<T>> handler;
+  private final ClusterManagerMetrics metrics;
+  private T result;
+  private Throwable cause;
+  private long completeTime;
+
+  public Completion(Handler<AsyncResult<T>> handler) {
+    this(handler, null);
+  }
+
+  public Completion(Handler<AsyncResult<T>> handler, ClusterManagerMetrics metrics) {
+    this(Vertx.currentContext(), handler, metrics);
+  }
+
+  Completion(Context context, Handler<AsyncResult<T>> handler, ClusterManagerMetrics metrics) {
+    this.context = context;
+    this.handler = handler;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Completes the handler successfully.
+   *
+   * @param result The result with which to complete the handler.
+   */
+  public void succeed(T result) {
+    accept(result, null);
+  }
+
+  /**
+   * Fails the handler.
+   *
+   * @param cause The cause of the failure.
+   */
+  public void fail(Throwable cause) {
+    accept(null, cause);
+  }
+
+  /**
+   * Runs a task on a Vert.x context.
+   *
+   * @param context The context on which to run the task, or {@code null} to run the task on the current thread.
+   * @param task The task to run.
+   * @return A completable future to be completed once the task has run.
+   */
+  public static CompletableFuture<Void> runOnContext(Context context, Runnable task) {
+    if (context == null || Vertx.currentContext() == context) {
+      task.run();
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    context.runOnContext(event -> {
+      try {
+        task.run();
+        future.complete(null);
+      } catch (RuntimeException e) {
+        future.completeExceptionally(e);
+      }
+    });
+    return future;
+  }
+
+  @Override
+  public void accept(T result, Throwable error) {
+    this.result = result;
+    this.cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    if (context == null || Vertx.currentContext() == context) {
+      if (metrics != null) {
+        metrics.handlerDispatched(0);
+      }
+      handler.handle(this);
+    } else {
+      if (metrics != null) {
+        completeTime = System.nanoTime();
+      }
+      context.runOnContext(this);
+    }
+  }
+
+  @Override
+  public void handle(Void event) {
+    if (metrics != null) {
+      metrics.handlerDispatched(System.nanoTime() - completeTime);
+    }
+    handler.handle(this);
+  }
+
+  @Override
+  public T result() {
+    return result;
+  }
+
+  @Override
+  public Throwable cause() {
+    return cause;
+  }
+
+  @Override
+  public boolean succeeded() {
+    return cause == null;
+  }
+
+  @Override
+  public boolean failed() {
+    return cause != null;
+  }
+
+}
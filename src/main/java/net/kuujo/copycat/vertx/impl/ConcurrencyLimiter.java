@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous concurrency limiter.<p>
+ *
+ * Limits the number of asynchronous tasks that may be in progress at once. Tasks submitted while the limit is reached
+ * are queued and started in submission order as earlier tasks complete. Queued tasks are started in a loop by the
+ * thread that completed the earlier task, so a long queue of tasks that complete immediately doesn't overflow the
+ * stack.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class ConcurrencyLimiter {
+  private final int limit;
+  private final Queue<Runnable> pending = new ArrayDeque<>();
+  private int active;
+  private boolean draining;
+
+  public ConcurrencyLimiter(int limit) {
+    this.limit = limit;
+  }
+
+  /**
+   * Submits a task to the limiter.
+   *
+   * @param task A supplier with which to start the task.
+   * @return A completable future to be completed once the task has completed.
+   */
+  public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+    if (limit <= 0) {
+      return task.get();
+    }
+
+    CompletableFuture<T> future = new CompletableFuture<>();
+    Runnable runnable = () -> {
+      CompletableFuture<T> result;
+      try {
+        result = task.get();
+      } catch (RuntimeException e) {
+        release();
+        future.completeExceptionally(e);
+        return;
+      }
+      result.whenComplete((value, error) -> {
+        release();
+        if (error == null) {
+          future.complete(value);
+        } else {
+          future.completeExceptionally(error);
+        }
+      });
+    };
+
+    boolean start;
+    synchronized (this) {
+      start = active < limit && pending.isEmpty();
+      if (start) {
+        active++;
+      } else {
+        pending.add(runnable);
+      }
+    }
+    if (start) {
+      runnable.run();
+    }
+    return future;
+  }
+
+  /**
+   * Starts pending tasks once a task has completed.<p>
+   *
+   * If a task is already being started by another call, whether on this thread because the task completed
+   * immediately or on another thread, the permit is left for that call to hand on once the task has started.
+   */
+  private void release() {
+    synchronized (this) {
+      active--;
+      if (draining) {
+        return;
+      }
+      draining = true;
+    }
+
+    while (true) {
+      Runnable next;
+      synchronized (this) {
+        next = active < limit ? pending.poll() : null;
+        if (next == null) {
+          draining = false;
+          return;
+        }
+        active++;
+      }
+      next.run();
+    }
+  }
+
+}
@@ -16,85 +16,488 @@
 package net.kuujo.copycat.vertx.impl;
 
 import io.vertx.core.AsyncResult;
-import io.vertx.core.Future;
+import io.vertx.core.Context;
 import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxException;
 import io.vertx.core.shareddata.AsyncMap;
+import net.kuujo.copycat.vertx.ChangeEvent;
+import net.kuujo.copycat.vertx.ClusterManagerMetrics;
+import net.kuujo.copycat.vertx.ReadStats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
- * Copycat asynchronous map.
+ * Copycat asynchronous map.<p>
+ *
+ * Keys put with a TTL are expired by the node that put them. TTLs are best effort: a key's expiry is lost if the node
+ * that put it fails or leaves the cluster, and the key then remains in the map until it's removed or overwritten.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public class CopycatAsyncMap<K, V> implements AsyncMap<K, V> {
+  private static final long EXPIRY_TICK = 100;
+  private static final int EXPIRY_WHEEL_SIZE = 512;
+  private static final int BULK_CHUNK_SIZE = 1000;
+  private static final int MAX_COMPUTE_ATTEMPTS = 64;
+
   private final net.kuujo.copycat.collections.AsyncMap<K, V> map;
+  private final WriteBatcher<K, V> batcher;
+  private final ChangeFeed<K, V> feed;
+  private final ScheduledExecutorService scheduler;
+  private final OperationTracker tracker;
+  private final ClusterManagerMetrics metrics;
+  private final ConcurrentMap<K, Expiry<K, V>> expiries = new ConcurrentHashMap<>();
+  private volatile TimingWheel<Expiry<K, V>> expiryWheel;
+  private volatile boolean closed;
 
-  public CopycatAsyncMap(net.kuujo.copycat.collections.AsyncMap<K, V> map) {
+  public CopycatAsyncMap(net.kuujo.copycat.collections.AsyncMap<K, V> map, WriteBatcher<K, V> batcher,
+      ChangeFeed<K, V> feed, ScheduledExecutorService scheduler, ReadStats readStats, ClusterManagerMetrics metrics) {
     this.map = map;
+    this.batcher = batcher;
+    this.feed = feed;
+    this.scheduler = scheduler;
+    this.tracker = new OperationTracker(metrics, readStats);
+    this.metrics = metrics;
   }
 
   @Override
   public void get(K key, Handler<AsyncResult<V>> resultHandler) {
-    map.get(key).whenComplete((result, error) -> handleResult(result, error, resultHandler));
+    tracker.track("map.get", () -> afterWrites(() -> tracker.recordRead(map.get(key))))
+      .whenComplete(new Completion<>(resultHandler, metrics));
   }
 
   @Override
   public void put(K key, V value, Handler<AsyncResult<Void>> resultHandler) {
-    map.put(key, value).whenComplete((result, error) -> handleResult(null, error, resultHandler));
+    Completion<Void> completion = new Completion<>(resultHandler, metrics);
+    long startTime = metrics.operationStarted("map.put");
+    CompletableFuture<?> future = batcher != null ? batcher.put(key, value) : map.put(key, value);
+    future.whenComplete((result, error) -> {
+      metrics.operationCompleted("map.put", startTime, error);
+      if (error == null) {
+        expiries.remove(key);
+        publish(ChangeEvent.Type.PUT, key, value);
+      }
+      completion.accept(null, error);
+    });
   }
 
   @Override
-  public void put(K key, V value, long l, Handler<AsyncResult<Void>> resultHandler) {
-    map.put(key, value).whenComplete((result, error) -> handleResult(null, error, resultHandler));
+  public void put(K key, V value, long ttl, Handler<AsyncResult<Void>> resultHandler) {
+    Completion<Void> completion = new Completion<>(resultHandler, metrics);
+    tracker.track("map.put", () -> afterWrites(() -> map.put(key, value))).whenComplete((result, error) -> {
+      if (error == null) {
+        expire(key, value, ttl);
+        publish(ChangeEvent.Type.PUT, key, value);
+      }
+      completion.accept(null, error);
+    });
   }
 
   @Override
   public void putIfAbsent(K key, V value, Handler<AsyncResult<V>> resultHandler) {
-    map.putIfAbsent(key, value).whenComplete((result, error) -> handleResult(result, error, resultHandler));
+    Completion<V> completion = new Completion<>(resultHandler, metrics);
+    tracker.track("map.putIfAbsent", () -> afterWrites(() -> map.putIfAbsent(key, value)))
+      .whenComplete((result, error) -> {
+        if (error == null && result == null) {
+          publish(ChangeEvent.Type.PUT, key, value);
+        }
+        completion.accept(result, error);
+      });
   }
 
   @Override
-  public void putIfAbsent(K key, V value, long timeout, Handler<AsyncResult<V>> resultHandler) {
-    map.putIfAbsent(key, value).whenComplete((result, error) -> handleResult(result, error, resultHandler));
+  public void putIfAbsent(K key, V value, long ttl, Handler<AsyncResult<V>> resultHandler) {
+    Completion<V> completion = new Completion<>(resultHandler, metrics);
+    tracker.track("map.putIfAbsent", () -> afterWrites(() -> map.putIfAbsent(key, value)))
+      .whenComplete((result, error) -> {
+        if (error == null && result == null) {
+          expire(key, value, ttl);
+          publish(ChangeEvent.Type.PUT, key, value);
+        }
+        completion.accept(result, error);
+      });
   }
 
   @Override
   public void remove(K key, Handler<AsyncResult<V>> resultHandler) {
-    map.remove(key).whenComplete((result, error) -> handleResult(result, error, resultHandler));
+    Completion<V> completion = new Completion<>(resultHandler, metrics);
+    tracker.track("map.remove", () -> afterWrites(() -> map.remove(key))).whenComplete((result, error) -> {
+      if (error == null) {
+        expiries.remove(key);
+        if (result != null) {
+          publish(ChangeEvent.Type.REMOVE, key, result);
+        }
+      }
+      completion.accept(result, error);
+    });
   }
 
   @Override
   public void removeIfPresent(K key, V value, Handler<AsyncResult<Boolean>> resultHandler) {
-    map.remove(key).whenComplete((result, error) -> handleResult(result != null, error, resultHandler));
+    Completion<Boolean> completion = new Completion<>(resultHandler, metrics);
+    tracker.track("map.removeIfPresent", () -> afterWrites(() -> map.remove(key, value)))
+      .whenComplete((result, error) -> {
+        if (error == null && result) {
+          expiries.remove(key);
+          publish(ChangeEvent.Type.REMOVE, key, value);
+        }
+        completion.accept(result, error);
+      });
   }
 
   @Override
   public void replace(K key, V value, Handler<AsyncResult<V>> resultHandler) {
-    map.replace(key, value).whenComplete((result, error) -> handleResult(result, error, resultHandler));
+    Completion<V> completion = new Completion<>(resultHandler, metrics);
+    tracker.track("map.replace", () -> afterWrites(() -> map.replace(key, value))).whenComplete((result, error) -> {
+      if (error == null && result != null) {
+        publish(ChangeEvent.Type.PUT, key, value);
+      }
+      completion.accept(result, error);
+    });
   }
 
   @Override
   public void replaceIfPresent(K key, V oldValue, V newValue, Handler<AsyncResult<Boolean>> resultHandler) {
-    map.replace(key, oldValue, newValue).whenComplete((result, error) -> handleResult(result, error, resultHandler));
+    Completion<Boolean> completion = new Completion<>(resultHandler, metrics);
+    tracker.track("map.replaceIfPresent", () -> afterWrites(() -> map.replace(key, oldValue, newValue)))
+      .whenComplete((result, error) -> {
+        if (error == null && result) {
+          publish(ChangeEvent.Type.PUT, key, newValue);
+        }
+        completion.accept(result, error);
+      });
   }
 
   @Override
   public void clear(Handler<AsyncResult<Void>> resultHandler) {
-    map.clear().whenComplete((result, error) -> handleResult(result, error, resultHandler));
+    Completion<Void> completion = new Completion<>(resultHandler, metrics);
+    tracker.track("map.clear", () -> afterWrites(map::clear)).whenComplete((result, error) -> {
+      if (error == null) {
+        expiries.clear();
+        publish(ChangeEvent.Type.CLEAR, null, null);
+      }
+      completion.accept(result, error);
+    });
   }
 
   @Override
   public void size(Handler<AsyncResult<Integer>> resultHandler) {
-    map.size().whenComplete((result, error) -> handleResult(result, error, resultHandler));
+    tracker.track("map.size", () -> afterWrites(() -> tracker.recordRead(map.size())))
+      .whenComplete(new Completion<>(resultHandler, metrics));
+  }
+
+  /**
+   * Atomically computes a new value for a key.<p>
+   *
+   * The current value is read and the new value is written with a conditional put, replace, or remove that only
+   * succeeds if the key still has the value that was read. If the key was modified concurrently, the computation is
+   * retried with the updated value. The function may therefore be called more than once and should be free of side
+   * effects.
+   *
+   * @param key The key for which to compute a value.
+   * @param function A function with which to compute the new value from the key and its current value, which is
+   *                 {@code null} if the key is absent. Returning {@code null} removes the key.
+   * @param resultHandler A handler to be called with the new value.
+   */
+  public void compute(K key, BiFunction<? super K, ? super V, ? extends V> function,
+      Handler<AsyncResult<V>> resultHandler) {
+    Completion<V> completion = new Completion<>(resultHandler, metrics);
+    tracker.track("map.compute", () -> afterWrites(() -> compute(key, function, 1))).whenComplete((result, error) -> {
+      if (error == null) {
+        expiries.remove(key);
+      }
+      completion.accept(result, error);
+    });
+  }
+
+  /**
+   * Atomically merges a value into a key.<p>
+   *
+   * If the key is absent, the value is put. Otherwise, the new value is computed from the current value and the given
+   * value, with the same retry semantics as {@link #compute(Object, BiFunction, Handler)}.
+   *
+   * @param key The key into which to merge the value.
+   * @param value The value to merge.
+   * @param function A function with which to merge the current value and the given value. Returning {@code null}
+   *                 removes the key.
+   * @param resultHandler A handler to be called with the new value.
+   */
+  public void merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> function,
+      Handler<AsyncResult<V>> resultHandler) {
+    compute(key, (k, current) -> current == null ? value : function.apply(current, value), resultHandler);
+  }
+
+  /**
+   * Performs a single compare-and-set attempt of a computation, retrying if the key was modified concurrently.
+   */
+  private CompletableFuture<V> compute(K key, BiFunction<? super K, ? super V, ? extends V> function, int attempt) {
+    return map.get(key).thenCompose(current -> {
+      V updated = function.apply(key, current);
+      CompletableFuture<Boolean> future;
+      if (current == null) {
+        future = updated == null ? CompletableFuture.completedFuture(true)
+          : map.putIfAbsent(key, updated).thenApply(previous -> previous == null);
+      } else if (updated == null) {
+        future = map.remove(key, current);
+      } else {
+        future = map.replace(key, current, updated);
+      }
+
+      return future.thenCompose(succeeded -> {
+        if (succeeded) {
+          if (updated != null) {
+            publish(ChangeEvent.Type.PUT, key, updated);
+          } else if (current != null) {
+            publish(ChangeEvent.Type.REMOVE, key, current);
+          }
+          return CompletableFuture.completedFuture(updated);
+        } else if (attempt >= MAX_COMPUTE_ATTEMPTS) {
+          CompletableFuture<V> failed = new CompletableFuture<>();
+          failed.completeExceptionally(new VertxException("Failed to compute value for key " + key + " after "
+            + attempt + " attempts"));
+          return failed;
+        }
+        return compute(key, function, attempt + 1);
+      });
+    });
+  }
+
+  /**
+   * Gets the values for a set of keys.<p>
+   *
+   * Keys are read in chunks, with the reads for each chunk pipelined, and keys that are not present in the map are
+   * omitted from the result.
+   *
+   * @param keys The keys to get.
+   * @param resultHandler A handler to be called with a map of the keys that were present to their values.
+   */
+  public void getAll(Collection<K> keys, Handler<AsyncResult<Map<K, V>>> resultHandler) {
+    Completion<Map<K, V>> completion = new Completion<>(resultHandler, metrics);
+    Map<K, V> values = new HashMap<>();
+    getAll(keys, values::putAll, result -> completion.accept(result.succeeded() ? values : null, result.cause()));
+  }
+
+  /**
+   * Gets the values for a set of keys, streaming results back in chunks.<p>
+   *
+   * Each chunk of keys is read only once the previous chunk has been handled, so neither side needs to hold the full
+   * result in memory. Keys that are not present in the map are omitted from the chunk results.
+   *
+   * @param keys The keys to get.
+   * @param chunkHandler A handler to be called with each chunk of results.
+   * @param completionHandler A handler to be called once all chunks have been handled or a read fails.
+   */
+  public void getAll(Collection<K> keys, Handler<Map<K, V>> chunkHandler,
+      Handler<AsyncResult<Void>> completionHandler) {
+    Completion<Void> completion = new Completion<>(completionHandler, metrics);
+    List<K> list = new ArrayList<>(keys);
+    Context context = Vertx.currentContext();
+    tracker.track("map.getAll", () -> afterWrites(() -> chunks(list, chunk -> tracker.recordRead(getChunk(chunk))
+      .thenCompose(values -> Completion.runOnContext(context, () -> chunkHandler.handle(values))))))
+      .whenComplete((result, error) -> completion.accept(null, error));
   }
 
   /**
-   * Handles a CompletableFuture result.
+   * Puts a set of entries in the map as a single command.
+   *
+   * @param entries The entries to put.
+   * @param resultHandler A handler to be called once the entries have been put.
    */
-  private <T> void handleResult(T result, Throwable error, Handler<AsyncResult<T>> resultHandler) {
-    if (error == null) {
-      Future.succeededFuture(result).setHandler(resultHandler);
-    } else {
-      Future.<T>failedFuture(error).setHandler(resultHandler);
+  public void putAll(Map<K, V> entries, Handler<AsyncResult<Void>> resultHandler) {
+    Completion<Void> completion = new Completion<>(resultHandler, metrics);
+    tracker.track("map.putAll", () -> afterWrites(() -> map.putAll(entries))).whenComplete((result, error) -> {
+      if (error == null) {
+        for (Map.Entry<K, V> entry : entries.entrySet()) {
+          expiries.remove(entry.getKey());
+          publish(ChangeEvent.Type.PUT, entry.getKey(), entry.getValue());
+        }
+      }
+      completion.accept(null, error);
+    });
+  }
+
+  /**
+   * Removes a set of keys from the map.<p>
+   *
+   * Keys are removed in chunks, with the removals for each chunk pipelined.
+   *
+   * @param keys The keys to remove.
+   * @param resultHandler A handler to be called once the keys have been removed.
+   */
+  public void removeAll(Collection<K> keys, Handler<AsyncResult<Void>> resultHandler) {
+    Completion<Void> completion = new Completion<>(resultHandler, metrics);
+    List<K> list = new ArrayList<>(keys);
+    tracker.track("map.removeAll", () -> afterWrites(() -> chunks(list, chunk -> {
+      CompletableFuture<?>[] removals = new CompletableFuture[chunk.size()];
+      for (int i = 0; i < chunk.size(); i++) {
+        K key = chunk.get(i);
+        removals[i] = map.remove(key).thenAccept(value -> {
+          expiries.remove(key);
+          if (value != null) {
+            publish(ChangeEvent.Type.REMOVE, key, value);
+          }
+        });
+      }
+      return CompletableFuture.allOf(removals);
+    }))).whenComplete((result, error) -> completion.accept(null, error));
+  }
+
+  /**
+   * Reads a chunk of keys with pipelined gets.
+   */
+  @SuppressWarnings("unchecked")
+  private CompletableFuture<Map<K, V>> getChunk(List<K> keys) {
+    CompletableFuture<V>[] gets = new CompletableFuture[keys.size()];
+    for (int i = 0; i < keys.size(); i++) {
+      gets[i] = map.get(keys.get(i));
+    }
+    return CompletableFuture.allOf(gets).thenApply(v -> {
+      Map<K, V> values = new HashMap<>();
+      for (int i = 0; i < gets.length; i++) {
+        V value = gets[i].join();
+        if (value != null) {
+          values.put(keys.get(i), value);
+        }
+      }
+      return values;
+    });
+  }
+
+  /**
+   * Applies an operation to each chunk of keys in turn, starting each chunk once the previous chunk has completed.
+   */
+  private CompletableFuture<Void> chunks(List<K> keys, Function<List<K>, CompletableFuture<Void>> operation) {
+    CompletableFuture<Void> future = CompletableFuture.completedFuture(null);
+    for (int i = 0; i < keys.size(); i += BULK_CHUNK_SIZE) {
+      List<K> chunk = keys.subList(i, Math.min(i + BULK_CHUNK_SIZE, keys.size()));
+      future = future.thenCompose(v -> operation.apply(chunk));
+    }
+    return future;
+  }
+
+  /**
+   * Schedules a key to expire after the given TTL.<p>
+   *
+   * Only the most recent expiry for a key is retained, and expired keys are removed only if they are still mapped to
+   * the value that was put with the TTL, so a key that was overwritten in the meantime is never expired early.
+   */
+  private void expire(K key, V value, long ttl) {
+    if (ttl <= 0) {
+      expiries.remove(key);
+      return;
+    }
+    TimingWheel<Expiry<K, V>> wheel = expiryWheel();
+    if (wheel != null) {
+      Expiry<K, V> expiry = new Expiry<>(key, value);
+      expiries.put(key, expiry);
+      wheel.schedule(expiry, ttl);
+    }
+  }
+
+  /**
+   * Returns the expiry wheel, creating it on the first TTL put.
+   *
+   * @return The expiry wheel or {@code null} if the map has been closed.
+   */
+  private TimingWheel<Expiry<K, V>> expiryWheel() {
+    TimingWheel<Expiry<K, V>> wheel = expiryWheel;
+    if (wheel == null) {
+      synchronized (this) {
+        wheel = expiryWheel;
+        if (wheel == null) {
+          if (closed) {
+            return null;
+          }
+          wheel = new TimingWheel<>(scheduler, EXPIRY_TICK, EXPIRY_WHEEL_SIZE, this::expire);
+          expiryWheel = wheel;
+        }
+      }
+    }
+    return wheel;
+  }
+
+  /**
+   * Removes a batch of expired keys from the map.
+   */
+  private void expire(List<Expiry<K, V>> expired) {
+    for (Expiry<K, V> expiry : expired) {
+      if (expiries.remove(expiry.key, expiry)) {
+        tracker.track("map.expire", () -> map.remove(expiry.key, expiry.value)).whenComplete((result, error) -> {
+          // If the removal failed then retry it on the next tick unless the key has since been updated.
+          TimingWheel<Expiry<K, V>> wheel = expiryWheel();
+          if (error != null && wheel != null && expiries.putIfAbsent(expiry.key, expiry) == null) {
+            wheel.schedule(expiry, EXPIRY_TICK);
+          } else if (error == null && result) {
+            publish(ChangeEvent.Type.EXPIRE, expiry.key, expiry.value);
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * Stops expiring keys.<p>
+   *
+   * Pending expiries are not persisted or handed off to other nodes, so keys that were still due to expire are left
+   * in the map rather than removed before their TTL has elapsed.
+   */
+  public void close() {
+    TimingWheel<Expiry<K, V>> wheel;
+    synchronized (this) {
+      closed = true;
+      wheel = expiryWheel;
+    }
+    if (wheel != null) {
+      for (Expiry<K, V> expiry : wheel.close()) {
+        expiries.remove(expiry.key, expiry);
+      }
+    }
+  }
+
+  /**
+   * Publishes a committed change to the map's change feed if change feeds are enabled.
+   */
+  private void publish(ChangeEvent.Type type, K key, V value) {
+    if (feed != null) {
+      feed.publish(type, key, value);
+    }
+  }
+
+  /**
+   * Runs an operation once all previously batched puts have been committed.<p>
+   *
+   * Operations other than {@code put} cannot be merged into a {@code putAll} batch, so they are ordered after any
+   * pending batches to preserve the order in which operations were submitted.
+   */
+  private <T> CompletableFuture<T> afterWrites(Supplier<CompletableFuture<T>> operation) {
+    if (batcher == null) {
+      return operation.get();
+    }
+    return batcher.barrier().thenCompose(v -> operation.get());
+  }
+
+  /**
+   * Pending key expiry.
+   */
+  private static class Expiry<K, V> {
+    private final K key;
+    private final V value;
+
+    private Expiry(K key, V value) {
+      this.key = key;
+      this.value = value;
     }
   }
 
@@ -16,79 +16,221 @@
 package net.kuujo.copycat.vertx.impl;
 
 import io.vertx.core.AsyncResult;
-import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.spi.cluster.AsyncMultiMap;
 import io.vertx.core.spi.cluster.ChoosableIterable;
+import net.kuujo.copycat.vertx.ChangeEvent;
+import net.kuujo.copycat.vertx.ClusterManagerMetrics;
+import net.kuujo.copycat.vertx.NearCacheStats;
+import net.kuujo.copycat.vertx.ReadStats;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Copycat asynchronous multimap.
+ * Copycat asynchronous multimap.<p>
+ *
+ * When the near-cache is enabled, changes made through the local node are applied to the cache immediately. Changes
+ * made through other nodes invalidate the cache when they're delivered through the multimap's change feed if change
+ * feeds are enabled, and are otherwise only seen once the cached entry is refreshed.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public class CopycatAsyncMultiMap<K, V> implements AsyncMultiMap<K, V> {
+  private static final int MAX_ROTATIONS = 1 << 16;
+
   private final net.kuujo.copycat.collections.AsyncMultiMap<K, V> map;
+  private final NearCache<K, Collection<V>> cache;
+  private final ChangeFeed<K, V> feed;
+  private final ConcurrentMap<K, AtomicInteger> rotations = new ConcurrentHashMap<>();
+  private final Set<V> localValues = ConcurrentHashMap.newKeySet();
+  private final OperationTracker tracker;
+  private final ClusterManagerMetrics metrics;
 
-  public CopycatAsyncMultiMap(net.kuujo.copycat.collections.AsyncMultiMap<K, V> map) {
+  public CopycatAsyncMultiMap(net.kuujo.copycat.collections.AsyncMultiMap<K, V> map,
+      NearCache<K, Collection<V>> cache, ChangeFeed<K, V> feed, ReadStats readStats, ClusterManagerMetrics metrics) {
     this.map = map;
+    this.cache = cache;
+    this.feed = feed;
+    this.tracker = new OperationTracker(metrics, readStats);
+    this.metrics = metrics;
+    if (cache != null && feed != null) {
+      feed.listen(event -> cache.invalidate(event.key()));
+    }
+  }
+
+  /**
+   * Returns the statistics of the multimap near-cache.
+   *
+   * @return The near-cache statistics or {@code null} if the near-cache is disabled.
+   */
+  public NearCacheStats nearCache() {
+    return cache;
   }
 
   @Override
   public void add(K k, V v, Handler<AsyncResult<Void>> resultHandler) {
-    map.put(k, v).whenComplete((result, error) -> {
+    Completion<Void> completion = new Completion<>(resultHandler, metrics);
+    tracker.track("multimap.add", () -> map.put(k, v)).whenComplete((result, error) -> {
       if (error == null) {
-        Future.<Void>succeededFuture().setHandler(resultHandler);
+        localValues.add(v);
+        publish(ChangeEvent.Type.PUT, k, v);
+        if (cache != null) {
+          cache.update(k, values -> {
+            if (values.contains(v)) {
+              return values;
+            }
+            Collection<V> updated = new ArrayList<>(values);
+            updated.add(v);
+            return updated;
+          });
+        }
+        completion.succeed(null);
       } else {
-        Future.<Void>failedFuture(error).setHandler(resultHandler);
+        completion.fail(error);
       }
     });
   }
 
   @Override
   public void get(K k, Handler<AsyncResult<ChoosableIterable<V>>> resultHandler) {
-    map.get(k).whenComplete((result, error) -> {
+    Completion<ChoosableIterable<V>> completion = new Completion<>(resultHandler, metrics);
+    if (cache != null) {
+      NearCache.Entry<Collection<V>> entry = cache.lookup(k);
+      if (entry != null) {
+        if (entry.isStale() && entry.refresh()) {
+          load(k, null);
+        }
+        completion.succeed(choosable(k, entry.value()));
+        return;
+      }
+    }
+    load(k, completion);
+  }
+
+  /**
+   * Loads a key's values from the cluster, populating the near-cache if it's enabled.
+   */
+  private void load(K k, Completion<ChoosableIterable<V>> completion) {
+    long version = cache != null ? cache.version(k) : 0;
+    tracker.track("multimap.get", () -> tracker.recordRead(map.get(k))).whenComplete((result, error) -> {
       if (error == null) {
-        Future.<ChoosableIterable<V>>succeededFuture(new ChoosableCollection<V>(result)).setHandler(resultHandler);
+        if (cache != null) {
+          cache.load(k, result, version);
+        }
+        if (completion != null) {
+          completion.succeed(choosable(k, result));
+        }
       } else {
-        Future.<ChoosableIterable<V>>failedFuture(error).setHandler(resultHandler);
+        if (cache != null) {
+          cache.invalidate(k);
+        }
+        if (completion != null) {
+          completion.fail(error);
+        }
       }
     });
   }
 
   @Override
   public void remove(K k, V v, Handler<AsyncResult<Boolean>> resultHandler) {
-    map.remove(k, v).whenComplete((result, error) -> {
+    Completion<Boolean> completion = new Completion<>(resultHandler, metrics);
+    tracker.track("multimap.remove", () -> map.remove(k, v)).whenComplete((result, error) -> {
       if (error == null) {
-        Future.succeededFuture(result).setHandler(resultHandler);
+        uncache(k, v);
+        if (result) {
+          publish(ChangeEvent.Type.REMOVE, k, v);
+        }
+        completion.succeed(result);
       } else {
-        Future.<Boolean>failedFuture(error).setHandler(resultHandler);
+        completion.fail(error);
       }
     });
   }
 
   @Override
   public void removeAllForValue(V v, Handler<AsyncResult<Void>> resultHandler) {
-    map.entrySet().whenComplete((result, error) -> {
-      if (error == null) {
-        AtomicInteger counter = new AtomicInteger();
-        for (Map.Entry<K, V> entry : result) {
-          map.remove(entry.getKey(), entry.getValue()).whenComplete((removeResult, removeError) -> {
-            if (removeError == null) {
-              if (counter.incrementAndGet() == result.size()) {
-                Future.<Void>succeededFuture().setHandler(resultHandler);
+    Completion<Void> completion = new Completion<>(resultHandler, metrics);
+    localValues.remove(v);
+    tracker.track("multimap.removeAllForValue", () -> map.entrySet().thenCompose(entries -> {
+      List<CompletableFuture<Boolean>> removals = new ArrayList<>();
+      for (Map.Entry<K, V> entry : entries) {
+        if (Objects.equals(entry.getValue(), v)) {
+          K k = entry.getKey();
+          removals.add(map.remove(k, v).whenComplete((removed, error) -> {
+            if (error == null) {
+              uncache(k, v);
+              if (removed) {
+                publish(ChangeEvent.Type.REMOVE, k, v);
               }
-            } else {
-              Future.<Void>failedFuture(removeError).setHandler(resultHandler);
             }
-          });
+          }));
         }
+      }
+      return CompletableFuture.allOf(removals.toArray(new CompletableFuture[removals.size()]));
+    })).whenComplete((result, error) -> {
+      if (error == null) {
+        completion.succeed(null);
       } else {
-        Future.<Void>failedFuture(error).setHandler(resultHandler);
+        if (cache != null) {
+          cache.invalidateAll();
+        }
+        completion.fail(error);
       }
     });
   }
 
+  /**
+   * Wraps a key's values in a choosable collection.<p>
+   *
+   * All collections for a key share the same rotation so that successive lookups continue round-robin from where the
+   * last choice left off, and values that were added through the local node are preferred over remote values. A key's
+   * rotation is dropped once the key has no values, and all rotations are reset if rotations are held for too many
+   * keys, which only restarts round-robin selection from the first value.
+   */
+  private ChoosableIterable<V> choosable(K k, Collection<V> values) {
+    if (values.isEmpty()) {
+      rotations.remove(k);
+      return new ChoosableCollection<>(values);
+    }
+    if (rotations.size() >= MAX_ROTATIONS) {
+      rotations.clear();
+    }
+    AtomicInteger rotation = rotations.computeIfAbsent(k, key -> new AtomicInteger());
+    return new ChoosableCollection<>(values, rotation, localValues::contains);
+  }
+
+  /**
+   * Publishes a committed change to the multimap's change feed if change feeds are enabled.
+   */
+  private void publish(ChangeEvent.Type type, K k, V v) {
+    if (feed != null) {
+      feed.publish(type, k, v);
+    }
+  }
+
+  /**
+   * Removes a value from a key's near-cache entry.
+   */
+  private void uncache(K k, V v) {
+    if (cache != null) {
+      cache.update(k, values -> {
+        Collection<V> updated = new ArrayList<>(values);
+        updated.remove(v);
+        if (updated.isEmpty()) {
+          rotations.remove(k);
+        }
+        return updated;
+      });
+    }
+  }
+
 }
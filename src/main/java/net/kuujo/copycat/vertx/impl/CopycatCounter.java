@@ -16,10 +16,13 @@
 package net.kuujo.copycat.vertx.impl;
 
 import io.vertx.core.AsyncResult;
-import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.shareddata.Counter;
 import net.kuujo.copycat.atomic.AsyncAtomicLong;
+import net.kuujo.copycat.vertx.ClusterManagerMetrics;
+import net.kuujo.copycat.vertx.ReadStats;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Copycat counter.
@@ -28,55 +31,74 @@ import net.kuujo.copycat.atomic.AsyncAtomicLong;
  */
 public class CopycatCounter implements Counter {
   private final AsyncAtomicLong counter;
+  private final CounterShard shard;
+  private final OperationTracker tracker;
+  private final ClusterManagerMetrics metrics;
 
-  public CopycatCounter(AsyncAtomicLong counter) {
+  public CopycatCounter(AsyncAtomicLong counter, CounterShard shard, ReadStats readStats,
+      ClusterManagerMetrics metrics) {
     this.counter = counter;
+    this.shard = shard;
+    this.tracker = new OperationTracker(metrics, readStats);
+    this.metrics = metrics;
+  }
+
+  /**
+   * Returns the counter's local shard.
+   *
+   * @return The counter's local shard or {@code null} if the counter is not sharded.
+   */
+  public CounterShard shard() {
+    return shard;
   }
 
   @Override
   public void get(Handler<AsyncResult<Long>> resultHandler) {
-    counter.get().whenComplete((result, error) -> handleResult(result, error, resultHandler));
+    tracker.track("counter.get",
+      () -> tracker.recordRead(shard != null ? shard.get() : counter.get()))
+      .whenComplete(new Completion<>(resultHandler, metrics));
   }
 
   @Override
   public void incrementAndGet(Handler<AsyncResult<Long>> resultHandler) {
-    counter.incrementAndGet().whenComplete((result, error) -> handleResult(result, error, resultHandler));
+    tracker.track("counter.incrementAndGet",
+      () -> shard != null ? CompletableFuture.completedFuture(shard.add(1)) : counter.incrementAndGet())
+      .whenComplete(new Completion<>(resultHandler, metrics));
   }
 
   @Override
   public void getAndIncrement(Handler<AsyncResult<Long>> resultHandler) {
-    counter.getAndIncrement().whenComplete((result, error) -> handleResult(result, error, resultHandler));
+    tracker.track("counter.getAndIncrement",
+      () -> shard != null ? CompletableFuture.completedFuture(shard.add(1) - 1) : counter.getAndIncrement())
+      .whenComplete(new Completion<>(resultHandler, metrics));
   }
 
   @Override
   public void decrementAndGet(Handler<AsyncResult<Long>> resultHandler) {
-    counter.decrementAndGet().whenComplete((result, error) -> handleResult(result, error, resultHandler));
+    tracker.track("counter.decrementAndGet",
+      () -> shard != null ? CompletableFuture.completedFuture(shard.add(-1)) : counter.decrementAndGet())
+      .whenComplete(new Completion<>(resultHandler, metrics));
   }
 
   @Override
   public void addAndGet(long value, Handler<AsyncResult<Long>> resultHandler) {
-    counter.addAndGet(value).whenComplete((result, error) -> handleResult(result, error, resultHandler));
+    tracker.track("counter.addAndGet",
+      () -> shard != null ? CompletableFuture.completedFuture(shard.add(value)) : counter.addAndGet(value))
+      .whenComplete(new Completion<>(resultHandler, metrics));
   }
 
   @Override
   public void getAndAdd(long value, Handler<AsyncResult<Long>> resultHandler) {
-    counter.getAndAdd(value).whenComplete((result, error) -> handleResult(result, error, resultHandler));
+    tracker.track("counter.getAndAdd",
+      () -> shard != null ? CompletableFuture.completedFuture(shard.add(value) - value) : counter.getAndAdd(value))
+      .whenComplete(new Completion<>(resultHandler, metrics));
   }
 
   @Override
   public void compareAndSet(long expect, long update, Handler<AsyncResult<Boolean>> resultHandler) {
-    counter.compareAndSet(expect, update).whenComplete((result, error) -> handleResult(result, error, resultHandler));
-  }
-
-  /**
-   * Handles a CompletableFuture result.
-   */
-  private <T> void handleResult(T result, Throwable error, Handler<AsyncResult<T>> resultHandler) {
-    if (error == null) {
-      Future.succeededFuture(result).setHandler(resultHandler);
-    } else {
-      Future.<T>failedFuture(error).setHandler(resultHandler);
-    }
+    tracker.track("counter.compareAndSet",
+      () -> shard != null ? shard.compareAndSet(expect, update) : counter.compareAndSet(expect, update))
+      .whenComplete(new Completion<>(resultHandler, metrics));
   }
 
 }
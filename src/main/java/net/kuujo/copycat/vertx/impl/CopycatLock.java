@@ -16,28 +16,31 @@
 package net.kuujo.copycat.vertx.impl;
 
 import io.vertx.core.shareddata.Lock;
-import net.kuujo.copycat.collections.AsyncLock;
 
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Copycat lock.
+ * Copycat lock.<p>
+ *
+ * Releasing the lock never blocks. Each lock instance may only be released once.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public class CopycatLock implements Lock {
-  private final AsyncLock lock;
+  private final LockCoordinator coordinator;
+  private final Runnable releaseHandler;
+  private final AtomicBoolean released = new AtomicBoolean();
 
-  public CopycatLock(AsyncLock lock) {
-    this.lock = lock;
+  public CopycatLock(LockCoordinator coordinator, Runnable releaseHandler) {
+    this.coordinator = coordinator;
+    this.releaseHandler = releaseHandler;
   }
 
   @Override
   public void release() {
-    try {
-      lock.unlock().get();
-    } catch (InterruptedException | ExecutionException e) {
-      throw new RuntimeException(e);
+    if (released.compareAndSet(false, true)) {
+      coordinator.release();
+      releaseHandler.run();
     }
   }
 
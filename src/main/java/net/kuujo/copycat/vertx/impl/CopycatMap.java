@@ -15,29 +15,58 @@
  */
 package net.kuujo.copycat.vertx.impl;
 
+import io.vertx.core.streams.ReadStream;
 import net.kuujo.copycat.collections.AsyncMap;
+import net.kuujo.copycat.vertx.ChangeEvent;
+import net.kuujo.copycat.vertx.ClusterManagerMetrics;
+import net.kuujo.copycat.vertx.ReadStats;
 
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 
 /**
- * Synchronous Copycat map.
+ * Synchronous Copycat map.<p>
+ *
+ * The map is constructed with the future of the underlying Copycat map so that it can be returned without waiting for
+ * the map to be opened. Each operation waits for the map to be opened and for the operation to complete.<p>
+ *
+ * The key set, values, and entry set are lazy views. Size and membership queries are delegated to the cluster, and
+ * iterating a view reads the keys of each partition with one bulk read, since Copycat maps can't be scanned by range,
+ * and then reads the values of those keys from the cluster a page at a time. Only one partition's keys and one page of
+ * values are held in memory at a time.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public class CopycatMap<K, V> implements Map<K, V> {
-  private final AsyncMap<K, V> map;
+  private static final int PAGE_SIZE = 1000;
+
+  private final CompletableFuture<AsyncMap<K, V>> map;
+  private final CompletableFuture<ChangeFeed<K, V>> feed;
+  private final OperationTracker tracker;
 
-  public CopycatMap(AsyncMap<K, V> map) {
+  public CopycatMap(CompletableFuture<AsyncMap<K, V>> map, CompletableFuture<ChangeFeed<K, V>> feed,
+      ReadStats readStats, ClusterManagerMetrics metrics) {
     this.map = map;
+    this.feed = feed;
+    this.tracker = new OperationTracker(metrics, readStats);
   }
 
   @Override
   public int size() {
     try {
-      return map.size().get();
+      return tracker.track("syncmap.size", () -> tracker.recordRead(map.thenCompose(AsyncMap::size))).get();
     } catch (InterruptedException | ExecutionException e) {
       throw new RuntimeException(e);
     }
@@ -46,7 +75,7 @@ public class CopycatMap<K, V> implements Map<K, V> {
   @Override
   public boolean isEmpty() {
     try {
-      return map.isEmpty().get();
+      return tracker.track("syncmap.isEmpty", () -> tracker.recordRead(map.thenCompose(AsyncMap::isEmpty))).get();
     } catch (InterruptedException | ExecutionException e) {
       throw new RuntimeException(e);
     }
@@ -55,7 +84,8 @@ public class CopycatMap<K, V> implements Map<K, V> {
   @Override
   public boolean containsKey(Object key) {
     try {
-      return map.containsKey(key).get();
+      return tracker.track("syncmap.containsKey", () -> tracker.recordRead(map.thenCompose(m -> m.containsKey(key))))
+        .get();
     } catch (InterruptedException | ExecutionException e) {
       throw new RuntimeException(e);
     }
@@ -64,7 +94,8 @@ public class CopycatMap<K, V> implements Map<K, V> {
   @Override
   public boolean containsValue(Object value) {
     try {
-      return map.containsValue(value).get();
+      return tracker.track("syncmap.containsValue",
+        () -> tracker.recordRead(map.thenCompose(m -> m.containsValue(value)))).get();
     } catch (InterruptedException | ExecutionException e) {
       throw new RuntimeException(e);
     }
@@ -73,7 +104,7 @@ public class CopycatMap<K, V> implements Map<K, V> {
   @Override
   public V get(Object key) {
     try {
-      return map.get(key).get();
+      return tracker.track("syncmap.get", () -> tracker.recordRead(map.thenCompose(m -> m.get(key)))).get();
     } catch (InterruptedException | ExecutionException e) {
       throw new RuntimeException(e);
     }
@@ -82,16 +113,23 @@ public class CopycatMap<K, V> implements Map<K, V> {
   @Override
   public V put(K key, V value) {
     try {
-      return map.put(key, value).get();
+      V previous = tracker.track("syncmap.put", () -> map.thenCompose(m -> m.put(key, value))).get();
+      publish(ChangeEvent.Type.PUT, key, value);
+      return previous;
     } catch (InterruptedException | ExecutionException e) {
       throw new RuntimeException(e);
     }
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public V remove(Object key) {
     try {
-      return map.remove(key).get();
+      V previous = tracker.track("syncmap.remove", () -> map.thenCompose(m -> m.remove(key))).get();
+      if (previous != null) {
+        publish(ChangeEvent.Type.REMOVE, (K) key, previous);
+      }
+      return previous;
     } catch (InterruptedException | ExecutionException e) {
       throw new RuntimeException(e);
     }
@@ -100,7 +138,10 @@ public class CopycatMap<K, V> implements Map<K, V> {
   @Override
   public void putAll(Map<? extends K, ? extends V> map) {
     try {
-      this.map.putAll(map).get();
+      tracker.track("syncmap.putAll", () -> this.map.thenCompose(m -> m.putAll(map))).get();
+      for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+        publish(ChangeEvent.Type.PUT, entry.getKey(), entry.getValue());
+      }
     } catch (InterruptedException | ExecutionException e) {
       throw new RuntimeException(e);
     }
@@ -109,7 +150,8 @@ public class CopycatMap<K, V> implements Map<K, V> {
   @Override
   public void clear() {
     try {
-      map.clear().get();
+      tracker.track("syncmap.clear", () -> map.thenCompose(AsyncMap::clear)).get();
+      publish(ChangeEvent.Type.CLEAR, null, null);
     } catch (InterruptedException | ExecutionException e) {
       throw new RuntimeException(e);
     }
@@ -117,29 +159,257 @@ public class CopycatMap<K, V> implements Map<K, V> {
 
   @Override
   public Set<K> keySet() {
-    try {
-      return map.keySet().get();
-    } catch (InterruptedException | ExecutionException e) {
-      throw new RuntimeException(e);
-    }
+    return new KeySetView();
   }
 
   @Override
   public Collection<V> values() {
-    try {
-      return map.values().get();
-    } catch (InterruptedException | ExecutionException e) {
-      throw new RuntimeException(e);
-    }
+    return new ValuesView();
   }
 
   @Override
   public Set<Entry<K, V>> entrySet() {
-    try {
-      return map.entrySet().get();
-    } catch (InterruptedException | ExecutionException e) {
-      throw new RuntimeException(e);
+    return new EntrySetView();
+  }
+
+  /**
+   * Returns an asynchronous stream of the map's entries.<p>
+   *
+   * Keys are read from the cluster a partition at a time and their values a page at a time, and no further pages are
+   * read while the stream is paused.
+   *
+   * @return A read stream of the map's entries.
+   */
+  public ReadStream<Entry<K, V>> entryStream() {
+    return new EntryReadStream<>(cursor());
+  }
+
+  /**
+   * Creates a cursor over the map's entries.
+   */
+  private MapCursor<K, V, Entry<K, V>> cursor() {
+    return new MapCursor<>(map, this::readKeys, this::readEntries, PAGE_SIZE);
+  }
+
+  /**
+   * Creates a cursor over the map's keys.
+   */
+  private MapCursor<K, V, K> keyCursor() {
+    return new MapCursor<>(map, this::readKeys, (m, keys) -> CompletableFuture.completedFuture(keys), PAGE_SIZE);
+  }
+
+  /**
+   * Reads the keys of a partition.
+   */
+  private CompletableFuture<Set<K>> readKeys(AsyncMap<K, V> map) {
+    return tracker.track("syncmap.keySet", () -> tracker.recordRead(map.keySet()));
+  }
+
+  /**
+   * Reads the entries of a page of keys, skipping keys that have since been removed.
+   */
+  @SuppressWarnings("unchecked")
+  private CompletableFuture<List<Entry<K, V>>> readEntries(AsyncMap<K, V> map, List<K> keys) {
+    CompletableFuture<V>[] values = new CompletableFuture[keys.size()];
+    for (int i = 0; i < keys.size(); i++) {
+      K key = keys.get(i);
+      values[i] = tracker.track("syncmap.get", () -> tracker.recordRead(map.get(key)));
+    }
+    return CompletableFuture.allOf(values).thenApply(v -> {
+      List<Entry<K, V>> entries = new ArrayList<>(keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+        V value = values[i].join();
+        if (value != null) {
+          entries.add(new AbstractMap.SimpleImmutableEntry<>(keys.get(i), value));
+        }
+      }
+      return entries;
+    });
+  }
+
+  /**
+   * Lazy key set view.<p>
+   *
+   * Size and membership queries are delegated to the map, and the key set is only read when the view is iterated.
+   */
+  private class KeySetView extends AbstractSet<K> {
+    @Override
+    public int size() {
+      return CopycatMap.this.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return CopycatMap.this.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object key) {
+      return containsKey(key);
+    }
+
+    @Override
+    public boolean remove(Object key) {
+      return CopycatMap.this.remove(key) != null;
+    }
+
+    @Override
+    public void clear() {
+      CopycatMap.this.clear();
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+      return new CursorIterator<>(keyCursor(), key -> key);
     }
   }
 
+  /**
+   * Lazy values view.
+   */
+  private class ValuesView extends AbstractCollection<V> {
+    @Override
+    public int size() {
+      return CopycatMap.this.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return CopycatMap.this.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object value) {
+      return containsValue(value);
+    }
+
+    @Override
+    public void clear() {
+      CopycatMap.this.clear();
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+      CursorIterator<Entry<K, V>> entries = new CursorIterator<>(cursor(), Entry::getKey);
+      return new Iterator<V>() {
+        @Override
+        public boolean hasNext() {
+          return entries.hasNext();
+        }
+
+        @Override
+        public V next() {
+          return entries.next().getValue();
+        }
+
+        @Override
+        public void remove() {
+          entries.remove();
+        }
+      };
+    }
+  }
+
+  /**
+   * Lazy entry set view.
+   */
+  private class EntrySetView extends AbstractSet<Entry<K, V>> {
+    @Override
+    public int size() {
+      return CopycatMap.this.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return CopycatMap.this.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object object) {
+      if (!(object instanceof Entry)) {
+        return false;
+      }
+      Entry<?, ?> entry = (Entry<?, ?>) object;
+      V value = get(entry.getKey());
+      return value != null && value.equals(entry.getValue());
+    }
+
+    @Override
+    public void clear() {
+      CopycatMap.this.clear();
+    }
+
+    @Override
+    public Iterator<Entry<K, V>> iterator() {
+      return new CursorIterator<>(cursor(), Entry::getKey);
+    }
+  }
+
+  /**
+   * Paged cursor iterator.<p>
+   *
+   * Each page is requested from the cursor while the previous page is being iterated.
+   */
+  private class CursorIterator<T> implements Iterator<T> {
+    private final MapCursor<K, V, T> cursor;
+    private final Function<T, K> keyFunction;
+    private CompletableFuture<List<T>> nextPage;
+    private Iterator<T> page = Collections.emptyIterator();
+    private T last;
+    private boolean done;
+
+    private CursorIterator(MapCursor<K, V, T> cursor, Function<T, K> keyFunction) {
+      this.cursor = cursor;
+      this.keyFunction = keyFunction;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!page.hasNext() && !done) {
+        try {
+          List<T> elements = (nextPage != null ? nextPage : cursor.next()).get();
+          if (elements == null) {
+            done = true;
+            nextPage = null;
+          } else {
+            page = elements.iterator();
+            nextPage = cursor.next();
+          }
+        } catch (InterruptedException | ExecutionException e) {
+          throw new RuntimeException(e);
+        }
+      }
+      return page.hasNext();
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = page.next();
+      return last;
+    }
+
+    @Override
+    public void remove() {
+      if (last == null) {
+        throw new IllegalStateException();
+      }
+      CopycatMap.this.remove(keyFunction.apply(last));
+      last = null;
+    }
+  }
+
+  /**
+   * Publishes a committed change to the map's change feed if change feeds are enabled.
+   */
+  private void publish(ChangeEvent.Type type, K key, V value) {
+    feed.thenAccept(feed -> {
+      if (feed != null) {
+        feed.publish(type, key, value);
+      }
+    });
+  }
+
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.atomic.AsyncAtomicLong;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Node-local counter shard.<p>
+ *
+ * The shard accumulates counter deltas locally and flushes them to the cluster with a single {@code addAndGet} per
+ * flush interval. Because additions commute, flushes from different nodes never conflict. The shard tracks the last
+ * committed value it observed so that local updates can be answered with an estimate of the counter value without
+ * waiting for a commit. Flushes and reads from a single shard are performed one at a time, and deltas that are being
+ * flushed remain part of the estimate until the flush completes, so local estimates never go backwards because of a
+ * flush.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class CounterShard {
+  private final AsyncAtomicLong counter;
+  private final ScheduledFuture<?> flushFuture;
+  private long base;
+  private long pending;
+  private long flushing;
+  private CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+
+  public CounterShard(AsyncAtomicLong counter, ScheduledExecutorService scheduler, long flushInterval) {
+    this.counter = counter;
+    this.flushFuture = scheduler.scheduleAtFixedRate(this::flushIfIdle, flushInterval, flushInterval,
+      TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Adds a delta to the local shard.
+   *
+   * @param value The delta to add.
+   * @return The estimated counter value after the addition.
+   */
+  public synchronized long add(long value) {
+    pending += value;
+    return base + flushing + pending;
+  }
+
+  /**
+   * Flushes the local shard to the cluster.
+   *
+   * @return A completable future to be completed once the pending delta has been committed.
+   */
+  public CompletableFuture<Void> flush() {
+    return serialize(this::doFlush);
+  }
+
+  /**
+   * Flushes the local shard unless another flush or read is still in progress, in which case the pending delta is
+   * left for the next flush interval rather than queued behind it.
+   */
+  private void flushIfIdle() {
+    synchronized (this) {
+      if (!tail.isDone()) {
+        return;
+      }
+    }
+    flush();
+  }
+
+  /**
+   * Commits the pending delta.
+   */
+  private CompletableFuture<Void> doFlush() {
+    long value;
+    synchronized (this) {
+      value = pending;
+      pending = 0;
+      flushing = value;
+    }
+    if (value == 0) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return counter.addAndGet(value).handle((result, error) -> {
+      synchronized (this) {
+        flushing = 0;
+        if (error == null) {
+          base = result;
+          return null;
+        }
+        // Return the delta to the shard so that it's retried on the next flush.
+        pending += value;
+      }
+      throw error instanceof RuntimeException ? (RuntimeException) error : new IllegalStateException(error);
+    });
+  }
+
+  /**
+   * Flushes the local shard and reads the committed counter value.
+   *
+   * @return A completable future to be completed with the counter value, including any deltas added since the flush.
+   */
+  public CompletableFuture<Long> get() {
+    return serialize(() -> doFlush().thenCompose(v -> counter.get()).thenApply(result -> {
+      synchronized (this) {
+        base = result;
+        return result + pending;
+      }
+    }));
+  }
+
+  /**
+   * Flushes the local shard and performs an exact compare-and-set.
+   *
+   * @param expect The expected counter value.
+   * @param update The value to set.
+   * @return A completable future to be completed with a boolean indicating whether the value was set.
+   */
+  public CompletableFuture<Boolean> compareAndSet(long expect, long update) {
+    return serialize(() -> doFlush().thenCompose(v -> counter.compareAndSet(expect, update)).thenApply(result -> {
+      if (result) {
+        synchronized (this) {
+          base = update;
+        }
+      }
+      return result;
+    }));
+  }
+
+  /**
+   * Stops periodic flushes and flushes any remaining delta.
+   *
+   * @return A completable future to be completed once the remaining delta has been committed.
+   */
+  public CompletableFuture<Void> close() {
+    flushFuture.cancel(false);
+    return flush();
+  }
+
+  /**
+   * Runs an operation once all previously submitted operations have completed.<p>
+   *
+   * Serializing operations ensures that the results of concurrent flushes can't be applied out of order, and that a
+   * read never observes a flush whose delta is still counted as in flight.
+   */
+  private synchronized <T> CompletableFuture<T> serialize(Supplier<CompletableFuture<T>> operation) {
+    CompletableFuture<T> future = tail.handle((result, error) -> null).thenCompose(v -> operation.get());
+    tail = future;
+    return future;
+  }
+
+}
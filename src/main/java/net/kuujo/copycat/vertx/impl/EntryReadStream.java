@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.streams.ReadStream;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Map entry read stream.<p>
+ *
+ * Entries are read a page at a time from a {@link MapCursor}. The next page is only requested once the entries of
+ * the current page have been delivered, so a paused stream stops reading from the cluster until it's resumed. Handlers
+ * are called on the Vert.x context on which the stream was created.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class EntryReadStream<K, V> implements ReadStream<Map.Entry<K, V>> {
+  private final MapCursor<K, V, Map.Entry<K, V>> cursor;
+  private final Context context;
+  private final Queue<Map.Entry<K, V>> buffer = new ArrayDeque<>();
+  private Handler<Map.Entry<K, V>> handler;
+  private Handler<Void> endHandler;
+  private Handler<Throwable> exceptionHandler;
+  private boolean paused;
+  private boolean reading;
+  private boolean ended;
+  private boolean closed;
+
+  public EntryReadStream(MapCursor<K, V, Map.Entry<K, V>> cursor) {
+    this.cursor = cursor;
+    this.context = Vertx.currentContext();
+  }
+
+  @Override
+  public synchronized EntryReadStream<K, V> exceptionHandler(Handler<Throwable> handler) {
+    this.exceptionHandler = handler;
+    return this;
+  }
+
+  @Override
+  public EntryReadStream<K, V> handler(Handler<Map.Entry<K, V>> handler) {
+    synchronized (this) {
+      this.handler = handler;
+    }
+    drain();
+    return this;
+  }
+
+  @Override
+  public synchronized EntryReadStream<K, V> pause() {
+    paused = true;
+    return this;
+  }
+
+  @Override
+  public EntryReadStream<K, V> resume() {
+    synchronized (this) {
+      paused = false;
+    }
+    drain();
+    return this;
+  }
+
+  @Override
+  public synchronized EntryReadStream<K, V> endHandler(Handler<Void> handler) {
+    this.endHandler = handler;
+    return this;
+  }
+
+  /**
+   * Delivers buffered entries until the stream is paused or the buffer is empty, then reads the next page.<p>
+   *
+   * Pages that are read synchronously are handled within the loop rather than by calling back into it, so that a
+   * cursor whose pages are already complete can't overflow the stack.
+   */
+  private void drain() {
+    while (true) {
+      Map.Entry<K, V> entry;
+      Handler<Map.Entry<K, V>> handler;
+      Handler<Void> endHandler = null;
+      boolean read = false;
+      synchronized (this) {
+        if (paused || this.handler == null || closed) {
+          return;
+        }
+        entry = buffer.poll();
+        handler = this.handler;
+        if (entry == null) {
+          if (ended) {
+            closed = true;
+            endHandler = this.endHandler;
+          } else if (!reading) {
+            reading = true;
+            read = true;
+          }
+        }
+      }
+
+      if (entry != null) {
+        handler.handle(entry);
+      } else if (endHandler != null) {
+        endHandler.handle(null);
+        return;
+      } else if (!read) {
+        return;
+      } else {
+        CompletableFuture<List<Map.Entry<K, V>>> future = cursor.next();
+        if (!future.isDone()) {
+          future.whenComplete((page, error) -> Completion.runOnContext(context, () -> {
+            if (receive(page, error)) {
+              drain();
+            }
+          }));
+          return;
+        }
+
+        List<Map.Entry<K, V>> page = null;
+        Throwable error = null;
+        try {
+          page = future.join();
+        } catch (CompletionException | CancellationException e) {
+          error = e;
+        }
+        if (!receive(page, error)) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Receives a page of entries read from the cursor, returning a boolean indicating whether to continue draining.
+   */
+  private boolean receive(List<Map.Entry<K, V>> page, Throwable error) {
+    if (error instanceof CompletionException && error.getCause() != null) {
+      error = error.getCause();
+    }
+    Handler<Throwable> exceptionHandler = null;
+    synchronized (this) {
+      reading = false;
+      if (error != null) {
+        closed = true;
+        exceptionHandler = this.exceptionHandler;
+      } else if (page == null) {
+        ended = true;
+      } else {
+        buffer.addAll(page);
+      }
+    }
+
+    if (error != null) {
+      if (exceptionHandler != null) {
+        exceptionHandler.handle(error);
+      }
+      return false;
+    }
+    return true;
+  }
+
+}
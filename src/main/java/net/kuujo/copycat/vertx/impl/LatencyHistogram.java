@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram.<p>
+ *
+ * Values are recorded into log-linear buckets in the style of HdrHistogram: each power of two is divided into 16
+ * linear sub-buckets, so recorded values are accurate to within 1/16th (6.25%) of their magnitude. Recording a value
+ * updates the bucket count, total count, sum, and maximum with four independent atomic updates and never locks, so a
+ * snapshot taken while values are being recorded may be momentarily inconsistent across those statistics.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS + 1);
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records a value.
+   *
+   * @param value The value to record.
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts.incrementAndGet(index(value));
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  /**
+   * Returns the bucket index for the given value.
+   */
+  private static int index(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+    return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Returns the highest value that is recorded into the given bucket.
+   */
+  private static long highestValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+    int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+    return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+  }
+
+  /**
+   * Returns the number of recorded values.
+   *
+   * @return The number of recorded values.
+   */
+  public long count() {
+    return count.sum();
+  }
+
+  /**
+   * Returns the mean recorded value.
+   *
+   * @return The mean recorded value.
+   */
+  public long mean() {
+    long count = this.count.sum();
+    return count > 0 ? sum.sum() / count : 0;
+  }
+
+  /**
+   * Returns the maximum recorded value.
+   *
+   * @return The maximum recorded value.
+   */
+  public long max() {
+    return max.get();
+  }
+
+  /**
+   * Returns the value at the given percentile.
+   *
+   * @param percentile The percentile, between {@code 0} and {@code 100}.
+   * @return The value at the given percentile.
+   */
+  public long percentile(double percentile) {
+    long total = 0;
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    long target = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100));
+    long cumulative = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      cumulative += snapshot[i];
+      if (cumulative >= target) {
+        return Math.min(highestValue(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+}
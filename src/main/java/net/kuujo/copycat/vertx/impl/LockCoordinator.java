@@ -0,0 +1,343 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import io.vertx.core.VertxException;
+import io.vertx.core.shareddata.Lock;
+import net.kuujo.copycat.collections.AsyncLock;
+import net.kuujo.copycat.vertx.LockStats;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node-local lock coordinator.<p>
+ *
+ * The coordinator owns the Copycat lock for a single lock name on the local node. Local acquire requests are queued
+ * so that only one lock request is ever outstanding in the cluster for the node, and queued requests that time out
+ * are removed from the queue. If a lock is acquired after all of its waiters have timed out, it's released again.<p>
+ *
+ * When a lease time is configured, the Copycat lock is retained for up to the lease time after it was acquired.
+ * Releases within the lease hand the lock directly to the next local waiter, or keep it leased locally so that a
+ * subsequent local acquire completes without a consensus round. Once the lease expires the lock is released to the
+ * cluster as usual.<p>
+ *
+ * Local waiters are granted the lock in the order in which they requested it, and the time each waiter spends queued
+ * and holding the lock is recorded in the lock's {@link LockStats}.<p>
+ *
+ * If the Copycat lock can't be released, the release is retried a few times. If it still fails, queued waiters are
+ * failed rather than left waiting, the failure is recorded in the lock's stats, and the node treats the lock as still
+ * held by it: the next local acquire or the closing of the coordinator releases the Copycat lock again before doing
+ * anything else.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class LockCoordinator {
+  private static final int MAX_UNLOCK_ATTEMPTS = 3;
+  private static final long UNLOCK_RETRY_DELAY = 100;
+
+  private final String name;
+  private final AsyncLock lock;
+  private final ScheduledExecutorService scheduler;
+  private final long leaseTime;
+  private final LockStats stats;
+  private final Queue<Waiter> waiters = new ArrayDeque<>();
+  private State state = State.FREE;
+  private long acquireTime;
+  private long grantTime;
+  private ScheduledFuture<?> leaseFuture;
+
+  public LockCoordinator(String name, AsyncLock lock, ScheduledExecutorService scheduler, long leaseTime,
+      LockStats stats) {
+    this.name = name;
+    this.lock = lock;
+    this.scheduler = scheduler;
+    this.leaseTime = leaseTime;
+    this.stats = stats;
+  }
+
+  /**
+   * Acquires the lock.<p>
+   *
+   * The timeout is measured from the request time rather than from the call, so that time spent opening the lock
+   * counts towards it.
+   *
+   * @param requestTime The {@link System#nanoTime()} at which the lock was requested.
+   * @param timeout The time to wait for the lock in milliseconds.
+   * @param releaseHandler A callback to be called once the acquired lock is released or the acquire fails.
+   * @param completion A completion to be completed once the lock has been acquired or the timeout has elapsed.
+   */
+  public void acquire(long requestTime, long timeout, Runnable releaseHandler, Completion<Lock> completion) {
+    Waiter waiter = new Waiter(requestTime, releaseHandler, completion);
+    long remaining = timeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestTime);
+    boolean grant = false;
+    boolean request = false;
+    boolean release = false;
+    synchronized (this) {
+      if (state == State.LEASED && isLeaseValid()) {
+        cancelLease();
+        state = State.HELD;
+        grant = true;
+      } else if (remaining <= 0) {
+        stats.recordTimeout();
+      } else {
+        waiters.add(waiter);
+        stats.recordWaiters(waiters.size());
+        if (state == State.FREE) {
+          state = State.ACQUIRING;
+          request = true;
+        } else if (state == State.UNRELEASED) {
+          state = State.RELEASING;
+          release = true;
+        }
+        waiter.timeoutFuture = scheduler.schedule(() -> timeout(waiter), remaining, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    if (grant) {
+      grant(waiter);
+    } else if (remaining <= 0) {
+      waiter.fail(new VertxException("Timed out waiting to get lock " + name));
+    } else if (request) {
+      lock();
+    } else if (release) {
+      unlock(1);
+    }
+  }
+
+  /**
+   * Requests the Copycat lock.
+   */
+  private void lock() {
+    lock.lock().whenComplete((result, error) -> {
+      if (error == null) {
+        Waiter waiter;
+        synchronized (this) {
+          acquireTime = System.currentTimeMillis();
+          waiter = waiters.poll();
+          state = waiter != null ? State.HELD : State.RELEASING;
+        }
+
+        // If all waiters timed out while the lock was being acquired then release it again.
+        if (waiter != null) {
+          grant(waiter);
+        } else {
+          unlock(1);
+        }
+      } else {
+        List<Waiter> failed;
+        synchronized (this) {
+          failed = new ArrayList<>(waiters);
+          waiters.clear();
+          state = State.FREE;
+        }
+        for (Waiter waiter : failed) {
+          waiter.fail(error);
+        }
+      }
+    });
+  }
+
+  /**
+   * Releases the Copycat lock without blocking, retrying the release if it fails.
+   */
+  private void unlock(int attempt) {
+    lock.unlock().whenComplete((result, error) -> {
+      if (error != null && attempt < MAX_UNLOCK_ATTEMPTS) {
+        try {
+          scheduler.schedule(() -> unlock(attempt + 1), UNLOCK_RETRY_DELAY * attempt, TimeUnit.MILLISECONDS);
+          return;
+        } catch (RejectedExecutionException e) {
+          // The node is shutting down, so fail the waiters rather than retrying.
+        }
+      }
+
+      boolean request = false;
+      List<Waiter> failed = null;
+      synchronized (this) {
+        if (error == null) {
+          request = !waiters.isEmpty();
+          state = request ? State.ACQUIRING : State.FREE;
+        } else {
+          // The node may still hold the Copycat lock, so it's released again before the lock is next requested.
+          failed = new ArrayList<>(waiters);
+          waiters.clear();
+          state = State.UNRELEASED;
+        }
+      }
+
+      if (request) {
+        lock();
+      } else if (failed != null) {
+        stats.recordUnlockFailure();
+        for (Waiter waiter : failed) {
+          waiter.fail(error);
+        }
+      }
+    });
+  }
+
+  /**
+   * Grants the lock to a waiter.
+   */
+  private void grant(Waiter waiter) {
+    if (waiter.timeoutFuture != null) {
+      waiter.timeoutFuture.cancel(false);
+    }
+    long now = System.nanoTime();
+    synchronized (this) {
+      grantTime = now;
+    }
+    stats.recordWait(now - waiter.requestTime);
+    waiter.completion.succeed(new CopycatLock(this, waiter.releaseHandler));
+  }
+
+  /**
+   * Releases the lock on behalf of the local holder.
+   */
+  void release() {
+    Waiter next = null;
+    boolean unlock = false;
+    synchronized (this) {
+      if (state != State.HELD) {
+        return;
+      }
+      stats.recordHold(System.nanoTime() - grantTime);
+
+      if (leaseTime > 0 && isLeaseValid()) {
+        next = waiters.poll();
+        if (next == null) {
+          state = State.LEASED;
+          long remaining = acquireTime + leaseTime - System.currentTimeMillis();
+          leaseFuture = scheduler.schedule(this::expireLease, remaining, TimeUnit.MILLISECONDS);
+        }
+      } else {
+        state = State.RELEASING;
+        unlock = true;
+      }
+    }
+
+    if (next != null) {
+      grant(next);
+    } else if (unlock) {
+      unlock(1);
+    }
+  }
+
+  /**
+   * Releases the Copycat lock once its lease has expired.
+   */
+  private void expireLease() {
+    synchronized (this) {
+      if (state != State.LEASED) {
+        return;
+      }
+      leaseFuture = null;
+      state = State.RELEASING;
+    }
+    unlock(1);
+  }
+
+  /**
+   * Fails a waiter that has timed out.
+   */
+  private void timeout(Waiter waiter) {
+    boolean removed;
+    synchronized (this) {
+      removed = waiters.remove(waiter);
+    }
+    if (removed) {
+      stats.recordTimeout();
+      waiter.fail(new VertxException("Timed out waiting to get lock " + name));
+    }
+  }
+
+  /**
+   * Closes the Copycat lock, first releasing it if it's leased by the local node or a previous release failed.
+   *
+   * @return A completable future to be completed once the lock has been closed.
+   */
+  public CompletableFuture<Void> close() {
+    boolean unlock;
+    synchronized (this) {
+      cancelLease();
+      unlock = state == State.LEASED || state == State.UNRELEASED;
+      state = State.FREE;
+    }
+    return (unlock ? lock.unlock() : CompletableFuture.<Void>completedFuture(null)).thenCompose(v -> lock.close());
+  }
+
+  /**
+   * Returns a boolean indicating whether the Copycat lock is still within its lease.
+   */
+  private boolean isLeaseValid() {
+    return System.currentTimeMillis() - acquireTime < leaseTime;
+  }
+
+  /**
+   * Cancels the lease expiration timer.
+   */
+  private void cancelLease() {
+    if (leaseFuture != null) {
+      leaseFuture.cancel(false);
+      leaseFuture = null;
+    }
+  }
+
+  /**
+   * Lock state.
+   */
+  private static enum State {
+    FREE,
+    ACQUIRING,
+    HELD,
+    LEASED,
+    RELEASING,
+    UNRELEASED
+  }
+
+  /**
+   * Queued lock request.
+   */
+  private static class Waiter {
+    private final Runnable releaseHandler;
+    private final Completion<Lock> completion;
+    private final long requestTime;
+    private ScheduledFuture<?> timeoutFuture;
+
+    private Waiter(long requestTime, Runnable releaseHandler, Completion<Lock> completion) {
+      this.requestTime = requestTime;
+      this.releaseHandler = releaseHandler;
+      this.completion = completion;
+    }
+
+    private void fail(Throwable error) {
+      if (timeoutFuture != null) {
+        timeoutFuture.cancel(false);
+      }
+      releaseHandler.run();
+      completion.fail(error);
+    }
+  }
+
+}
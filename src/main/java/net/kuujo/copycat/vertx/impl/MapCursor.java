@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.collections.AsyncMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Paged map cursor.<p>
+ *
+ * The cursor reads a map's elements one partition at a time and a page at a time. Copycat maps have no range or scan
+ * query, so the keys of a partition are read with a single bulk read, but the elements of each page, such as the
+ * values of its keys, are only read from the cluster once the page is requested. Only one partition's keys and one
+ * page's elements are held at a time. A key that's removed after its partition's keys were read may be missing from
+ * its page, so pages may be smaller than the page size or empty. Pages must be requested one at a time, each once the
+ * previous page has completed.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class MapCursor<K, V, T> {
+  private final CompletableFuture<List<AsyncMap<K, V>>> partitions;
+  private final Function<AsyncMap<K, V>, CompletableFuture<? extends Collection<K>>> keyReader;
+  private final BiFunction<AsyncMap<K, V>, List<K>, CompletableFuture<List<T>>> pageReader;
+  private final int pageSize;
+  private Iterator<K> keys = Collections.emptyIterator();
+  private int partition;
+
+  public MapCursor(CompletableFuture<AsyncMap<K, V>> map,
+    Function<AsyncMap<K, V>, CompletableFuture<? extends Collection<K>>> keyReader,
+    BiFunction<AsyncMap<K, V>, List<K>, CompletableFuture<List<T>>> pageReader, int pageSize) {
+    this.partitions = map.thenApply(m -> m instanceof PartitionedMap
+      ? ((PartitionedMap<K, V>) m).partitions() : Collections.singletonList(m));
+    this.keyReader = keyReader;
+    this.pageReader = pageReader;
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * Reads the next page of elements.
+   *
+   * @return A completable future to be completed with the next page of elements, or {@code null} once all pages have
+   *         been read.
+   */
+  public CompletableFuture<List<T>> next() {
+    return partitions.thenCompose(this::next);
+  }
+
+  /**
+   * Reads the elements of the next page of keys, reading the next partition's keys once the current partition has
+   * been exhausted.
+   */
+  private CompletableFuture<List<T>> next(List<AsyncMap<K, V>> partitions) {
+    if (keys.hasNext()) {
+      List<K> page = new ArrayList<>(pageSize);
+      while (keys.hasNext() && page.size() < pageSize) {
+        page.add(keys.next());
+      }
+      return pageReader.apply(partitions.get(partition - 1), page);
+    } else if (partition >= partitions.size()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return keyReader.apply(partitions.get(partition++)).thenCompose(keys -> {
+      this.keys = keys.iterator();
+      return next(partitions);
+    });
+  }
+
+}
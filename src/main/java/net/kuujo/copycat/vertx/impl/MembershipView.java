@@ -0,0 +1,244 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Cached cluster membership view.<p>
+ *
+ * The view maintains an immutable snapshot of the cluster's members which is replaced incrementally as members join
+ * and leave, so reading the members doesn't allocate. Membership changes are delivered to the change handler in
+ * batches: changes that occur within the batch window are coalesced, and a join and leave of the same member within a
+ * window cancel each other out. Members that leave are first suspected for the suspicion timeout, and a member that
+ * rejoins while it's suspected isn't reported as having left. Each batch maps members to {@code true} if they joined
+ * or {@code false} if they left.<p>
+ *
+ * Each member joins with an identity. A member that rejoins with a different identity than it left with has been
+ * restarted, so its leave is always reported before its join, even if it rejoins while it's suspected or within the
+ * same batch window.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class MembershipView {
+  private final ScheduledExecutorService scheduler;
+  private final long batchWindow;
+  private final long suspicionTimeout;
+  private final Consumer<Map<String, Boolean>> changeHandler;
+  private final Set<String> current = new LinkedHashSet<>();
+  private final Map<String, Object> identities = new HashMap<>();
+  private final Map<String, ScheduledFuture<?>> suspects = new HashMap<>();
+  private final Map<String, Boolean> changes = new LinkedHashMap<>();
+  private volatile List<String> members = Collections.emptyList();
+  private ScheduledFuture<?> batchFuture;
+
+  public MembershipView(ScheduledExecutorService scheduler, long batchWindow, long suspicionTimeout,
+      Consumer<Map<String, Boolean>> changeHandler) {
+    this.scheduler = scheduler;
+    this.batchWindow = batchWindow;
+    this.suspicionTimeout = suspicionTimeout;
+    this.changeHandler = changeHandler;
+  }
+
+  /**
+   * Returns the current members.
+   *
+   * @return An immutable list of the current members.
+   */
+  public List<String> members() {
+    return members;
+  }
+
+  /**
+   * Resets the view to the given members without reporting any changes.
+   *
+   * @param members The current members mapped to their identities.
+   */
+  public synchronized void reset(Map<String, ?> members) {
+    current.clear();
+    current.addAll(members.keySet());
+    identities.putAll(members);
+    this.members = Collections.unmodifiableList(new ArrayList<>(current));
+  }
+
+  /**
+   * Records that a member joined the cluster.
+   *
+   * @param member The member that joined.
+   * @param identity The identity of the member, which differs from its previous identity if it was restarted.
+   */
+  public void joined(String member, Object identity) {
+    Map<String, Boolean> departed = null;
+    boolean flush = false;
+    synchronized (this) {
+      ScheduledFuture<?> suspicion = suspects.remove(member);
+      if (suspicion == null && current.contains(member)) {
+        return;
+      }
+      Object previous = identities.put(member, identity);
+      boolean restarted = previous != null && !Objects.equals(previous, identity);
+      if (suspicion != null) {
+        suspicion.cancel(false);
+        if (!restarted) {
+          return;
+        }
+        current.remove(member);
+        change(member, false);
+      }
+
+      current.add(member);
+      update();
+      // Deliver a pending leave of a restarted member on its own rather than letting the join cancel it out.
+      if (restarted && changes.get(member) == Boolean.FALSE) {
+        departed = drain();
+      } else {
+        flush = change(member, true);
+      }
+    }
+
+    if (departed != null) {
+      changeHandler.accept(departed);
+      synchronized (this) {
+        flush = change(member, true);
+      }
+    }
+    if (flush) {
+      flush();
+    }
+  }
+
+  /**
+   * Records that a member left the cluster.
+   *
+   * @param member The member that left.
+   */
+  public void left(String member) {
+    synchronized (this) {
+      if (!current.contains(member) || suspects.containsKey(member)) {
+        return;
+      }
+      if (suspicionTimeout > 0) {
+        suspects.put(member, scheduler.schedule(() -> remove(member), suspicionTimeout, TimeUnit.MILLISECONDS));
+        return;
+      }
+    }
+    remove(member);
+  }
+
+  /**
+   * Removes a member that left the cluster from the view.
+   */
+  private void remove(String member) {
+    boolean flush;
+    synchronized (this) {
+      suspects.remove(member);
+      if (!current.remove(member)) {
+        return;
+      }
+      update();
+      flush = change(member, false);
+    }
+    if (flush) {
+      flush();
+    }
+  }
+
+  /**
+   * Replaces the members snapshot.
+   */
+  private void update() {
+    members = Collections.unmodifiableList(new ArrayList<>(current));
+  }
+
+  /**
+   * Records a membership change, returning a boolean indicating whether changes should be flushed immediately.
+   */
+  private boolean change(String member, boolean joined) {
+    Boolean previous = changes.get(member);
+    if (previous != null && previous != joined) {
+      changes.remove(member);
+    } else {
+      changes.put(member, joined);
+    }
+
+    if (batchWindow <= 0) {
+      return true;
+    }
+    if (batchFuture == null && !changes.isEmpty()) {
+      batchFuture = scheduler.schedule(this::flush, batchWindow, TimeUnit.MILLISECONDS);
+    }
+    return false;
+  }
+
+  /**
+   * Delivers pending membership changes to the change handler.
+   */
+  private void flush() {
+    Map<String, Boolean> batch;
+    synchronized (this) {
+      batch = drain();
+    }
+    if (batch != null) {
+      changeHandler.accept(batch);
+    }
+  }
+
+  /**
+   * Removes and returns the pending membership changes, cancelling the pending batch.
+   *
+   * @return The pending changes or {@code null} if there are no pending changes.
+   */
+  private Map<String, Boolean> drain() {
+    if (batchFuture != null) {
+      batchFuture.cancel(false);
+      batchFuture = null;
+    }
+    if (changes.isEmpty()) {
+      return null;
+    }
+    Map<String, Boolean> batch = new LinkedHashMap<>(changes);
+    changes.clear();
+    return batch;
+  }
+
+  /**
+   * Cancels pending batches and suspicion timeouts.
+   */
+  public synchronized void close() {
+    if (batchFuture != null) {
+      batchFuture.cancel(false);
+      batchFuture = null;
+    }
+    for (ScheduledFuture<?> suspicion : suspects.values()) {
+      suspicion.cancel(false);
+    }
+    suspects.clear();
+    changes.clear();
+  }
+
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.vertx.MemoryBudget;
+import net.kuujo.copycat.vertx.NearCacheStats;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongBiFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Node-local near-cache.<p>
+ *
+ * Keys are versioned so that a load which was started before a local mutation of the same key can never overwrite the
+ * mutated entry with an older value. Versions are kept in a fixed number of stripes rather than per key, so a mutation
+ * only discards concurrent loads of keys in the same stripe.<p>
+ *
+ * The size of each entry is reserved from the cache's memory budget. Sizes are computed before the cache is locked, so
+ * that estimating the size of a large entry doesn't block other updates. When an entry doesn't fit within the budget,
+ * sampled entries are evicted to make room for it, preferring stale entries and then the least recently used ones, and
+ * only entries that are larger than the whole budget are not cached.<p>
+ *
+ * An entry older than the TTL is stale. A stale entry may still be served while it's refreshed in the background, but
+ * an entry that has been stale for longer than the TTL, for instance because its refresh failed or was discarded, is
+ * treated as a miss.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class NearCache<K, V> implements NearCacheStats {
+  private static final int VERSION_STRIPES = 64;
+  private static final int EVICTION_SAMPLES = 8;
+
+  private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+  private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+  private final long ttl;
+  private final MemoryBudget memory;
+  private final ToLongBiFunction<K, V> sizer;
+  private final LongSupplier clock;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder staleHits = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private Iterator<Map.Entry<K, Entry<V>>> evictionHand = Collections.emptyIterator();
+
+  public NearCache(long ttl, MemoryBudget memory, ToLongBiFunction<K, V> sizer) {
+    this(ttl, memory, sizer, System::currentTimeMillis);
+  }
+
+  public NearCache(long ttl, MemoryBudget memory, ToLongBiFunction<K, V> sizer, LongSupplier clock) {
+    this.ttl = ttl;
+    this.memory = memory;
+    this.sizer = sizer;
+    this.clock = clock;
+  }
+
+  /**
+   * Looks up a cache entry, recording a hit, miss or stale hit.
+   *
+   * @param key The entry key.
+   * @return The cache entry or {@code null} if the key is not cached or its entry has been stale for too long.
+   */
+  public Entry<V> lookup(K key) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null || entry.isExpired()) {
+      misses.increment();
+      return null;
+    }
+    entry.accessed = clock.getAsLong();
+    if (entry.isStale()) {
+      staleHits.increment();
+    } else {
+      hits.increment();
+    }
+    return entry;
+  }
+
+  /**
+   * Returns the current version of a key.<p>
+   *
+   * The version must be read before a load is started and passed to {@link #load(Object, Object, long)} when the
+   * load completes.
+   *
+   * @param key The entry key.
+   * @return The current version of the key.
+   */
+  public long version(K key) {
+    return versions.get(stripe(key));
+  }
+
+  /**
+   * Caches a loaded value if the key has not been mutated since the given version.<p>
+   *
+   * If the key has been mutated, the load is discarded and the current entry, which already reflects the mutation, is
+   * left in place.
+   *
+   * @param key The entry key.
+   * @param value The loaded value.
+   * @param version The version of the key at the time the load was started.
+   */
+  public void load(K key, V value, long version) {
+    long size = sizer.applyAsLong(key, value);
+    synchronized (entries) {
+      if (versions.get(stripe(key)) == version) {
+        release(entries.remove(key));
+        cache(key, value, size, clock.getAsLong() + ttl);
+      }
+    }
+  }
+
+  /**
+   * Applies a local mutation to a cached entry if the entry is present.<p>
+   *
+   * The updated value is computed and sized before the cache is locked, and is recomputed if the entry is replaced in
+   * the meantime.
+   *
+   * @param key The entry key.
+   * @param function The function with which to update the cached value.
+   */
+  public void update(K key, UnaryOperator<V> function) {
+    for (;;) {
+      Entry<V> entry = entries.get(key);
+      V value = entry != null ? function.apply(entry.value) : null;
+      long size = entry != null ? sizer.applyAsLong(key, value) : 0;
+      synchronized (entries) {
+        if (entries.get(key) == entry) {
+          versions.incrementAndGet(stripe(key));
+          if (entry != null) {
+            release(entries.remove(key));
+            cache(key, value, size, entry.expires);
+          }
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Invalidates a single cache entry.
+   *
+   * @param key The entry key.
+   */
+  public void invalidate(K key) {
+    synchronized (entries) {
+      versions.incrementAndGet(stripe(key));
+      release(entries.remove(key));
+    }
+  }
+
+  /**
+   * Invalidates all cache entries.
+   */
+  public void invalidateAll() {
+    synchronized (entries) {
+      for (int i = 0; i < VERSION_STRIPES; i++) {
+        versions.incrementAndGet(i);
+      }
+      for (Entry<V> entry : entries.values()) {
+        release(entry);
+      }
+      entries.clear();
+    }
+  }
+
+  /**
+   * Caches an entry, evicting other entries if it doesn't fit within the memory budget.
+   */
+  private void cache(K key, V value, long size, long expires) {
+    if (!memory.fits(size)) {
+      evict(size);
+    }
+    if (memory.reserve(size)) {
+      entries.put(key, new Entry<>(value, expires, ttl, size, clock));
+    }
+  }
+
+  /**
+   * Evicts entries until an entry of the given size fits within the memory budget.<p>
+   *
+   * Eviction approximates LRU without ordering the whole cache: each eviction samples the next few entries from an
+   * iterator that sweeps the cache like a clock hand, and evicts the sampled entry that is stale or, if none are stale,
+   * the least recently used one.
+   */
+  private void evict(long size) {
+    if (size > memory.limit()) {
+      return;
+    }
+    long now = clock.getAsLong();
+    while (!memory.fits(size) && !entries.isEmpty()) {
+      Map.Entry<K, Entry<V>> victim = null;
+      for (int i = 0; i < EVICTION_SAMPLES; i++) {
+        if (!evictionHand.hasNext()) {
+          evictionHand = entries.entrySet().iterator();
+          if (!evictionHand.hasNext()) {
+            break;
+          }
+        }
+        Map.Entry<K, Entry<V>> candidate = evictionHand.next();
+        if (victim == null || evictBefore(candidate.getValue(), victim.getValue(), now)) {
+          victim = candidate;
+        }
+      }
+      if (victim != null && entries.remove(victim.getKey(), victim.getValue())) {
+        release(victim.getValue());
+        evictions.increment();
+      }
+    }
+  }
+
+  /**
+   * Returns a boolean indicating whether an entry should be evicted before another entry.
+   */
+  private static boolean evictBefore(Entry<?> entry, Entry<?> other, long now) {
+    boolean stale = entry.expires < now;
+    if (stale != other.expires < now) {
+      return stale;
+    }
+    return entry.accessed < other.accessed;
+  }
+
+  /**
+   * Returns the version stripe to which a key belongs.
+   */
+  private static int stripe(Object key) {
+    int hash = key != null ? key.hashCode() : 0;
+    return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % VERSION_STRIPES;
+  }
+
+  /**
+   * Releases the memory reserved for an entry.
+   */
+  private void release(Entry<V> entry) {
+    if (entry != null) {
+      memory.release(entry.size);
+    }
+  }
+
+  @Override
+  public MemoryBudget memory() {
+    return memory;
+  }
+
+  @Override
+  public int size() {
+    return entries.size();
+  }
+
+  @Override
+  public long hits() {
+    return hits.sum();
+  }
+
+  @Override
+  public long misses() {
+    return misses.sum();
+  }
+
+  @Override
+  public long staleHits() {
+    return staleHits.sum();
+  }
+
+  @Override
+  public long evictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * Near-cache entry.
+   */
+  public static class Entry<V> {
+    private final V value;
+    private final long expires;
+    private final long ttl;
+    private final long size;
+    private final LongSupplier clock;
+    private final AtomicLong refreshAfter;
+    private volatile long accessed;
+
+    private Entry(V value, long expires, long ttl, long size, LongSupplier clock) {
+      this.value = value;
+      this.expires = expires;
+      this.ttl = ttl;
+      this.size = size;
+      this.clock = clock;
+      this.refreshAfter = new AtomicLong(expires);
+      this.accessed = clock.getAsLong();
+    }
+
+    /**
+     * Returns the cached value.
+     */
+    public V value() {
+      return value;
+    }
+
+    /**
+     * Returns a boolean indicating whether the entry is older than the cache TTL.
+     */
+    public boolean isStale() {
+      return clock.getAsLong() > expires;
+    }
+
+    /**
+     * Returns a boolean indicating whether the entry has been stale for longer than the cache TTL.
+     */
+    private boolean isExpired() {
+      return clock.getAsLong() > expires + ttl;
+    }
+
+    /**
+     * Marks the entry as refreshing, returning {@code true} if no other refresh was started within the last TTL.<p>
+     *
+     * A refresh whose result was discarded doesn't prevent the entry from being refreshed again once the TTL has
+     * passed.
+     */
+    public boolean refresh() {
+      long now = clock.getAsLong();
+      long after = refreshAfter.get();
+      return now > after && refreshAfter.compareAndSet(after, now + ttl);
+    }
+  }
+
+}
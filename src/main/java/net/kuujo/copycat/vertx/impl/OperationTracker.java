@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.vertx.ClusterManagerMetrics;
+import net.kuujo.copycat.vertx.ReadStats;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Operation tracker.<p>
+ *
+ * Records the latency and outcome of asynchronous operations in the cluster manager's {@link ClusterManagerMetrics}
+ * and of reads in the {@link ReadStats} of a read consistency level.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class OperationTracker {
+  private final ClusterManagerMetrics metrics;
+  private final ReadStats readStats;
+
+  public OperationTracker(ClusterManagerMetrics metrics) {
+    this(metrics, null);
+  }
+
+  public OperationTracker(ClusterManagerMetrics metrics, ReadStats readStats) {
+    this.metrics = metrics;
+    this.readStats = readStats;
+  }
+
+  /**
+   * Records the latency and outcome of an operation.
+   *
+   * @param operation The operation name.
+   * @param supplier A supplier that starts the operation.
+   * @return The operation's future, which is failed if the supplier throws an exception.
+   */
+  public <T> CompletableFuture<T> track(String operation, Supplier<CompletableFuture<T>> supplier) {
+    long startTime = metrics.operationStarted(operation);
+    CompletableFuture<T> future;
+    try {
+      future = supplier.get();
+    } catch (RuntimeException e) {
+      future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+    }
+    return future.whenComplete((result, error) -> metrics.operationCompleted(operation, startTime, error));
+  }
+
+  /**
+   * Records the latency and outcome of a read.
+   *
+   * @param future The read's future.
+   * @return The read's future.
+   */
+  public <T> CompletableFuture<T> recordRead(CompletableFuture<T> future) {
+    if (readStats == null) {
+      return future;
+    }
+    long startTime = readStats.startRead();
+    return future.whenComplete((result, error) -> readStats.recordRead(startTime, error == null));
+  }
+
+}
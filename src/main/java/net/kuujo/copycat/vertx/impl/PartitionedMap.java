@@ -0,0 +1,201 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.collections.AsyncMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Partitioned Copycat map.<p>
+ *
+ * Spreads the keys of a single logical map across several Copycat maps, each of which is replicated independently
+ * with its own leader. Single-key operations are routed to the key's partition, and whole-map operations are applied
+ * to all partitions in parallel.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class PartitionedMap<K, V> implements AsyncMap<K, V> {
+  private final List<AsyncMap<K, V>> partitions;
+  private final Partitioner partitioner;
+
+  public PartitionedMap(List<AsyncMap<K, V>> partitions, Partitioner partitioner) {
+    this.partitions = partitions;
+    this.partitioner = partitioner;
+  }
+
+  /**
+   * Returns the map's partitions.
+   *
+   * @return The map's partitions.
+   */
+  public List<AsyncMap<K, V>> partitions() {
+    return partitions;
+  }
+
+  /**
+   * Returns the partition to which a key belongs.
+   */
+  private AsyncMap<K, V> partition(Object key) {
+    return partitions.get(partitioner.partition(key));
+  }
+
+  @Override
+  public CompletableFuture<V> get(Object key) {
+    return partition(key).get(key);
+  }
+
+  @Override
+  public CompletableFuture<V> put(K key, V value) {
+    return partition(key).put(key, value);
+  }
+
+  @Override
+  public CompletableFuture<V> putIfAbsent(K key, V value) {
+    return partition(key).putIfAbsent(key, value);
+  }
+
+  @Override
+  public CompletableFuture<V> remove(Object key) {
+    return partition(key).remove(key);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> remove(Object key, Object value) {
+    return partition(key).remove(key, value);
+  }
+
+  @Override
+  public CompletableFuture<V> replace(K key, V value) {
+    return partition(key).replace(key, value);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> replace(K key, V oldValue, V newValue) {
+    return partition(key).replace(key, oldValue, newValue);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> containsKey(Object key) {
+    return partition(key).containsKey(key);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> containsValue(Object value) {
+    return all(map -> map.containsValue(value)).thenApply(results -> results.contains(true));
+  }
+
+  @Override
+  public CompletableFuture<Void> putAll(Map<? extends K, ? extends V> map) {
+    List<Map<K, V>> entries = new ArrayList<>(partitions.size());
+    for (int i = 0; i < partitions.size(); i++) {
+      entries.add(new HashMap<>());
+    }
+    for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+      entries.get(partitioner.partition(entry.getKey())).put(entry.getKey(), entry.getValue());
+    }
+    List<CompletableFuture<Void>> futures = new ArrayList<>(partitions.size());
+    for (int i = 0; i < partitions.size(); i++) {
+      if (!entries.get(i).isEmpty()) {
+        futures.add(partitions.get(i).putAll(entries.get(i)));
+      }
+    }
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+  }
+
+  @Override
+  public CompletableFuture<Void> clear() {
+    return all(AsyncMap::clear).thenApply(results -> null);
+  }
+
+  @Override
+  public CompletableFuture<Integer> size() {
+    return all(AsyncMap::size).thenApply(sizes -> sizes.stream().mapToInt(Integer::intValue).sum());
+  }
+
+  @Override
+  public CompletableFuture<Boolean> isEmpty() {
+    return all(AsyncMap::isEmpty).thenApply(results -> !results.contains(false));
+  }
+
+  @Override
+  public CompletableFuture<Set<K>> keySet() {
+    return all(AsyncMap::keySet).thenApply(results -> {
+      Set<K> keys = new HashSet<>();
+      results.forEach(keys::addAll);
+      return keys;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Collection<V>> values() {
+    return all(AsyncMap::values).thenApply(results -> {
+      Collection<V> values = new ArrayList<>();
+      results.forEach(values::addAll);
+      return values;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Set<Map.Entry<K, V>>> entrySet() {
+    return all(AsyncMap::entrySet).thenApply(results -> {
+      Set<Map.Entry<K, V>> entries = new HashSet<>();
+      results.forEach(entries::addAll);
+      return entries;
+    });
+  }
+
+  @Override
+  public CompletableFuture<AsyncMap<K, V>> open() {
+    return all(AsyncMap::open).thenApply(results -> this);
+  }
+
+  @Override
+  public CompletableFuture<Void> close() {
+    return all(AsyncMap::close).thenApply(results -> null);
+  }
+
+  @Override
+  public boolean isOpen() {
+    return partitions.stream().allMatch(AsyncMap::isOpen);
+  }
+
+  /**
+   * Applies an operation to all partitions in parallel.
+   */
+  private <T> CompletableFuture<List<T>> all(Function<AsyncMap<K, V>, CompletableFuture<T>> operation) {
+    List<CompletableFuture<T>> futures = new ArrayList<>(partitions.size());
+    for (AsyncMap<K, V> partition : partitions) {
+      futures.add(operation.apply(partition));
+    }
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).thenApply(v -> {
+      List<T> results = new ArrayList<>(futures.size());
+      for (CompletableFuture<T> future : futures) {
+        results.add(future.join());
+      }
+      return results;
+    });
+  }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.collections.AsyncMultiMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Partitioned Copycat multimap.<p>
+ *
+ * Spreads the keys of a single logical multimap across several Copycat multimaps, each of which is replicated
+ * independently with its own leader. Single-key operations are routed to the key's partition, and whole-map
+ * operations are applied to all partitions in parallel.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class PartitionedMultiMap<K, V> implements AsyncMultiMap<K, V> {
+  private final List<AsyncMultiMap<K, V>> partitions;
+  private final Partitioner partitioner;
+
+  public PartitionedMultiMap(List<AsyncMultiMap<K, V>> partitions, Partitioner partitioner) {
+    this.partitions = partitions;
+    this.partitioner = partitioner;
+  }
+
+  /**
+   * Returns the partition to which a key belongs.
+   */
+  private AsyncMultiMap<K, V> partition(Object key) {
+    return partitions.get(partitioner.partition(key));
+  }
+
+  @Override
+  public CompletableFuture<Collection<V>> get(Object key) {
+    return partition(key).get(key);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> put(K key, V value) {
+    return partition(key).put(key, value);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> remove(Object key, Object value) {
+    return partition(key).remove(key, value);
+  }
+
+  @Override
+  public CompletableFuture<Collection<V>> remove(Object key) {
+    return partition(key).remove(key);
+  }
+
+  @Override
+  public CompletableFuture<Set<Map.Entry<K, V>>> entrySet() {
+    return all(AsyncMultiMap::entrySet).thenApply(results -> {
+      Set<Map.Entry<K, V>> entries = new HashSet<>();
+      results.forEach(entries::addAll);
+      return entries;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Integer> size() {
+    return all(AsyncMultiMap::size).thenApply(sizes -> sizes.stream().mapToInt(Integer::intValue).sum());
+  }
+
+  @Override
+  public CompletableFuture<AsyncMultiMap<K, V>> open() {
+    return all(AsyncMultiMap::open).thenApply(results -> this);
+  }
+
+  @Override
+  public CompletableFuture<Void> close() {
+    return all(AsyncMultiMap::close).thenApply(results -> null);
+  }
+
+  @Override
+  public boolean isOpen() {
+    return partitions.stream().allMatch(AsyncMultiMap::isOpen);
+  }
+
+  /**
+   * Applies an operation to all partitions in parallel.
+   */
+  private <T> CompletableFuture<List<T>> all(Function<AsyncMultiMap<K, V>, CompletableFuture<T>> operation) {
+    List<CompletableFuture<T>> futures = new ArrayList<>(partitions.size());
+    for (AsyncMultiMap<K, V> partition : partitions) {
+      futures.add(operation.apply(partition));
+    }
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).thenApply(v -> {
+      List<T> results = new ArrayList<>(futures.size());
+      for (CompletableFuture<T> future : futures) {
+        results.add(future.join());
+      }
+      return results;
+    });
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.util.serializer.Serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Key partitioner.<p>
+ *
+ * Keys must map to the same partition on every node, so identity hash codes can't be used. Strings and primitive
+ * wrappers are partitioned by their hash codes, which are defined by the Java specification, and other keys are
+ * partitioned by a hash of their serialized form.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class Partitioner {
+  private final Serializer serializer;
+  private final int partitions;
+
+  public Partitioner(Serializer serializer, int partitions) {
+    this.serializer = serializer;
+    this.partitions = partitions;
+  }
+
+  /**
+   * Returns the number of partitions.
+   *
+   * @return The number of partitions.
+   */
+  public int partitions() {
+    return partitions;
+  }
+
+  /**
+   * Returns the partition to which a key belongs.
+   *
+   * @param key The key.
+   * @return The key's partition.
+   */
+  public int partition(Object key) {
+    return Math.floorMod(spread(hash(key)), partitions);
+  }
+
+  /**
+   * Returns a hash of the key that's consistent across nodes.
+   */
+  private int hash(Object key) {
+    if (key == null) {
+      return 0;
+    }
+    Class<?> type = key.getClass();
+    if (type == String.class || type == Integer.class || type == Long.class || type == Short.class
+      || type == Byte.class || type == Character.class || type == Boolean.class || type == Double.class
+      || type == Float.class) {
+      return key.hashCode();
+    }
+    ByteBuffer buffer = serializer.writeObject(key);
+    int hash = 1;
+    while (buffer.hasRemaining()) {
+      hash = 31 * hash + buffer.get();
+    }
+    return hash;
+  }
+
+  /**
+   * Spreads the hash's high bits into its low bits.
+   */
+  private static int spread(int hash) {
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    return hash;
+  }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Resource handle registry.<p>
+ *
+ * Handles are keyed by resource type and name. The first lookup of a handle opens it, and concurrent lookups of a
+ * handle that is still being opened share the same open future. Handles may be pinned, in which case they remain
+ * open for the lifetime of the registry, or reference counted, in which case they are closed once they've had no
+ * references for longer than the idle timeout.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class ResourceRegistry {
+  private final ConcurrentMap<Key, Handle<?>> handles = new ConcurrentHashMap<>();
+  private final long idleTimeout;
+  private final LongSupplier clock;
+  private final ScheduledFuture<?> evictFuture;
+
+  public ResourceRegistry(ScheduledExecutorService scheduler, long idleTimeout) {
+    this(scheduler, idleTimeout, System::currentTimeMillis);
+  }
+
+  public ResourceRegistry(ScheduledExecutorService scheduler, long idleTimeout, LongSupplier clock) {
+    this.idleTimeout = idleTimeout;
+    this.clock = clock;
+    this.evictFuture = idleTimeout > 0
+      ? scheduler.scheduleAtFixedRate(this::evict, idleTimeout, idleTimeout, TimeUnit.MILLISECONDS) : null;
+  }
+
+  /**
+   * Gets a pinned handle, opening it if necessary.
+   *
+   * @param type The resource type.
+   * @param name The resource name.
+   * @param opener A supplier with which to open the resource.
+   * @return A completable future to be completed once the resource has been opened.
+   */
+  public <T> CompletableFuture<T> get(Class<?> type, String name, Supplier<CompletableFuture<T>> opener) {
+    return lookup(type, name, opener, null, false);
+  }
+
+  /**
+   * Acquires a reference to a handle, opening it if necessary.<p>
+   *
+   * Each call must be balanced by a call to {@link #release(Class, String)}.
+   *
+   * @param type The resource type.
+   * @param name The resource name.
+   * @param opener A supplier with which to open the resource.
+   * @param closer A function with which to close the resource once it has been evicted.
+   * @return A completable future to be completed once the resource has been opened.
+   */
+  public <T> CompletableFuture<T> acquire(Class<?> type, String name, Supplier<CompletableFuture<T>> opener,
+      Function<T, CompletableFuture<?>> closer) {
+    return lookup(type, name, opener, closer, true);
+  }
+
+  /**
+   * Releases a reference to a handle.
+   *
+   * @param type The resource type.
+   * @param name The resource name.
+   */
+  public void release(Class<?> type, String name) {
+    handles.computeIfPresent(new Key(type, name), (key, handle) -> {
+      handle.references--;
+      handle.lastAccess = clock.getAsLong();
+      return handle;
+    });
+  }
+
+  /**
+   * Looks up a handle, creating it if necessary.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> CompletableFuture<T> lookup(Class<?> type, String name, Supplier<CompletableFuture<T>> opener,
+      Function<T, CompletableFuture<?>> closer, boolean reference) {
+    Key key = new Key(type, name);
+    Handle<T> created = new Handle<>(new CompletableFuture<>(), closer);
+    Handle<T> handle = (Handle<T>) handles.compute(key, (k, current) -> {
+      Handle<T> result = current != null ? (Handle<T>) current : created;
+      if (reference) {
+        result.references++;
+      } else {
+        result.pinned = true;
+      }
+      result.lastAccess = clock.getAsLong();
+      return result;
+    });
+
+    // Open the resource outside of the mapping function since openers may look up other handles in the registry.
+    if (handle == created) {
+      open(opener, created.future);
+    }
+
+    // If the resource failed to open then remove the handle so that the next lookup can retry.
+    handle.future.whenComplete((result, error) -> {
+      if (error != null) {
+        handles.remove(key, handle);
+      }
+    });
+    return handle.future;
+  }
+
+  /**
+   * Opens a resource, completing the handle future with the result.
+   */
+  private <T> void open(Supplier<CompletableFuture<T>> opener, CompletableFuture<T> future) {
+    try {
+      opener.get().whenComplete((result, error) -> {
+        if (error == null) {
+          future.complete(result);
+        } else {
+          future.completeExceptionally(error);
+        }
+      });
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Closes handles that have been unreferenced for longer than the idle timeout.
+   */
+  void evict() {
+    long now = clock.getAsLong();
+    List<Handle<?>> evicted = new ArrayList<>();
+    for (Key key : handles.keySet()) {
+      handles.computeIfPresent(key, (k, handle) -> {
+        if (!handle.pinned && handle.references <= 0 && now - handle.lastAccess > idleTimeout
+          && handle.future.isDone()) {
+          evicted.add(handle);
+          return null;
+        }
+        return handle;
+      });
+    }
+    for (Handle<?> handle : evicted) {
+      handle.close();
+    }
+  }
+
+  /**
+   * Returns the number of open handles.
+   *
+   * @return The number of open handles.
+   */
+  public int size() {
+    return handles.size();
+  }
+
+  /**
+   * Stops evicting idle handles.
+   */
+  public void close() {
+    if (evictFuture != null) {
+      evictFuture.cancel(false);
+    }
+  }
+
+  /**
+   * Resource handle.
+   */
+  private static class Handle<T> {
+    private final CompletableFuture<T> future;
+    private final Function<T, CompletableFuture<?>> closer;
+    private int references;
+    private boolean pinned;
+    private long lastAccess;
+
+    private Handle(CompletableFuture<T> future, Function<T, CompletableFuture<?>> closer) {
+      this.future = future;
+      this.closer = closer;
+    }
+
+    private void close() {
+      if (closer != null && !future.isCompletedExceptionally()) {
+        closer.apply(future.join());
+      }
+    }
+  }
+
+  /**
+   * Handle key.
+   */
+  private static class Key {
+    private final Class<?> type;
+    private final String name;
+
+    private Key(Class<?> type, String name) {
+      this.type = type;
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+      if (object instanceof Key) {
+        Key key = (Key) object;
+        return key.type == type && key.name.equals(name);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(type, name);
+    }
+  }
+
+}
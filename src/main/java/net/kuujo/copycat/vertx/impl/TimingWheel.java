@@ -0,0 +1,180 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel.<p>
+ *
+ * Items are scheduled in constant time into the bucket of the lowest wheel that covers their deadline. Each tick
+ * cascades the current bucket of each higher wheel down into the lower wheels and then hands all items that expired
+ * in the tick to the expiry handler as a single batch, so large numbers of timeouts share a single timer.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class TimingWheel<T> {
+  private static final int LEVELS = 4;
+
+  private final long tickMillis;
+  private final int wheelSize;
+  private final List<Timeout<T>>[][] wheels;
+  private final Consumer<List<T>> expiryHandler;
+  private final ScheduledFuture<?> tickFuture;
+  private long currentTick;
+
+  @SuppressWarnings("unchecked")
+  public TimingWheel(ScheduledExecutorService scheduler, long tickMillis, int wheelSize,
+      Consumer<List<T>> expiryHandler) {
+    if (tickMillis <= 0)
+      throw new IllegalArgumentException("tick must be positive");
+    if (wheelSize <= 1)
+      throw new IllegalArgumentException("wheel size must be greater than 1");
+    this.tickMillis = tickMillis;
+    this.wheelSize = wheelSize;
+    this.wheels = new List[LEVELS][wheelSize];
+    this.expiryHandler = expiryHandler;
+    this.tickFuture = scheduler.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Schedules an item to expire after the given delay.
+   *
+   * @param item The item to schedule.
+   * @param delay The delay in milliseconds after which the item expires.
+   */
+  public synchronized void schedule(T item, long delay) {
+    long ticks = Math.max(1, (delay + tickMillis - 1) / tickMillis);
+    insert(new Timeout<>(item, currentTick + ticks));
+  }
+
+  /**
+   * Inserts a timeout into the lowest wheel that covers its deadline.
+   */
+  private void insert(Timeout<T> timeout) {
+    long remaining = timeout.deadline - currentTick;
+    long span = 1;
+    for (int level = 0; level < LEVELS; level++) {
+      if (remaining < span * wheelSize || level == LEVELS - 1) {
+        // Deadlines beyond the top wheel are parked in the furthest top-level bucket and re-inserted on cascade.
+        long slot = Math.min(timeout.deadline / span, currentTick / span + wheelSize - 1);
+        bucket(level, (int) (slot % wheelSize)).add(timeout);
+        return;
+      }
+      span *= wheelSize;
+    }
+  }
+
+  /**
+   * Returns the bucket at the given wheel level and index, creating it if necessary.
+   */
+  private List<Timeout<T>> bucket(int level, int index) {
+    List<Timeout<T>> bucket = wheels[level][index];
+    if (bucket == null) {
+      bucket = new ArrayList<>();
+      wheels[level][index] = bucket;
+    }
+    return bucket;
+  }
+
+  /**
+   * Advances the wheel by one tick.
+   */
+  private void tick() {
+    List<T> expired = new ArrayList<>();
+    synchronized (this) {
+      currentTick++;
+
+      // Cascade higher wheels from the top down whenever the lower wheel wraps around.
+      for (int level = LEVELS - 1; level > 0; level--) {
+        long levelSpan = (long) Math.pow(wheelSize, level);
+        if (currentTick % levelSpan == 0) {
+          int index = (int) ((currentTick / levelSpan) % wheelSize);
+          List<Timeout<T>> bucket = wheels[level][index];
+          if (bucket != null) {
+            wheels[level][index] = null;
+            for (Timeout<T> timeout : bucket) {
+              insert(timeout);
+            }
+          }
+        }
+      }
+
+      int index = (int) (currentTick % wheelSize);
+      List<Timeout<T>> bucket = wheels[0][index];
+      if (bucket != null) {
+        List<Timeout<T>> pending = null;
+        for (Timeout<T> timeout : bucket) {
+          if (timeout.deadline <= currentTick) {
+            expired.add(timeout.item);
+          } else {
+            if (pending == null) {
+              pending = new ArrayList<>();
+            }
+            pending.add(timeout);
+          }
+        }
+        wheels[0][index] = pending;
+      }
+    }
+
+    if (!expired.isEmpty()) {
+      expiryHandler.accept(expired);
+    }
+  }
+
+  /**
+   * Stops the wheel.
+   *
+   * @return The items that were still scheduled when the wheel was stopped.
+   */
+  public List<T> close() {
+    tickFuture.cancel(false);
+    List<T> pending = new ArrayList<>();
+    synchronized (this) {
+      for (List<Timeout<T>>[] wheel : wheels) {
+        for (int i = 0; i < wheel.length; i++) {
+          if (wheel[i] != null) {
+            for (Timeout<T> timeout : wheel[i]) {
+              pending.add(timeout.item);
+            }
+            wheel[i] = null;
+          }
+        }
+      }
+    }
+    return pending;
+  }
+
+  /**
+   * Scheduled wheel item.
+   */
+  private static class Timeout<T> {
+    private final T item;
+    private final long deadline;
+
+    private Timeout(T item, long deadline) {
+      this.item = item;
+      this.deadline = deadline;
+    }
+  }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.collections.AsyncMap;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Map write batcher.<p>
+ *
+ * Puts are grouped into batches which are committed as a single {@code putAll} command. Only one batch is in flight
+ * at any given time, and writes that arrive while a batch is being committed are queued for the next batch. The first
+ * write to an idle batcher is held for at most the batch window before its batch is sent.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class WriteBatcher<K, V> {
+  private final AsyncMap<K, V> map;
+  private final ScheduledExecutorService scheduler;
+  private final long window;
+  private final int maxSize;
+  private final Deque<Batch<K, V>> batches = new ArrayDeque<>();
+  private CompletableFuture<Void> lastFuture = CompletableFuture.completedFuture(null);
+  private boolean inFlight;
+
+  public WriteBatcher(AsyncMap<K, V> map, ScheduledExecutorService scheduler, long window, int maxSize) {
+    this.map = map;
+    this.scheduler = scheduler;
+    this.window = window;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Adds a put to the current batch.
+   *
+   * @param key The key to put.
+   * @param value The value to put.
+   * @return A completable future to be completed once the batch containing the put has been committed.
+   */
+  public CompletableFuture<Void> put(K key, V value) {
+    CompletableFuture<Void> future;
+    boolean schedule = false;
+    synchronized (this) {
+      Batch<K, V> batch = batches.peekLast();
+      if (batch == null || batch.entries.size() >= maxSize) {
+        batch = new Batch<>();
+        batches.addLast(batch);
+        schedule = !inFlight && batches.size() == 1;
+      }
+      batch.entries.put(key, value);
+      future = batch.future;
+    }
+
+    if (schedule) {
+      scheduler.schedule(() -> send(next(true)), window, TimeUnit.MILLISECONDS);
+    }
+    send(next(false));
+    return future;
+  }
+
+  /**
+   * Returns a future to be completed once all puts batched so far have been committed.<p>
+   *
+   * The returned future is always completed normally, even if a batch fails. Failures are reported to the callers
+   * of the failed puts.
+   *
+   * @return A completable future to be completed once all pending batches have been committed.
+   */
+  public CompletableFuture<Void> barrier() {
+    CompletableFuture<Void> future;
+    synchronized (this) {
+      Batch<K, V> batch = batches.peekLast();
+      future = batch != null ? batch.future : lastFuture;
+    }
+    send(next(true));
+    return future.handle((result, error) -> null);
+  }
+
+  /**
+   * Returns the next batch to send, or {@code null} if no batch should be sent.
+   */
+  private synchronized Batch<K, V> next(boolean force) {
+    if (inFlight) {
+      return null;
+    }
+    Batch<K, V> batch = batches.peekFirst();
+    if (batch == null || (!force && batches.size() == 1 && batch.entries.size() < maxSize)) {
+      return null;
+    }
+    batches.removeFirst();
+    inFlight = true;
+    lastFuture = batch.future;
+    return batch;
+  }
+
+  /**
+   * Sends a batch, sending the next queued batch once it has been committed.
+   */
+  private void send(Batch<K, V> batch) {
+    if (batch == null) {
+      return;
+    }
+    CompletableFuture<Void> future;
+    try {
+      future = map.putAll(batch.entries);
+    } catch (RuntimeException e) {
+      // Fail the batch rather than leaving the batcher in flight forever.
+      future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+    }
+    future.whenComplete((result, error) -> {
+      synchronized (this) {
+        inFlight = false;
+      }
+      if (error == null) {
+        batch.future.complete(null);
+      } else {
+        batch.future.completeExceptionally(error);
+      }
+      send(next(true));
+    });
+  }
+
+  /**
+   * Write batch.
+   */
+  private static class Batch<K, V> {
+    private final Map<K, V> entries = new LinkedHashMap<>();
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+  }
+
+}
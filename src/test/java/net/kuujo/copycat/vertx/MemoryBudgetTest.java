@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Memory budget test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class MemoryBudgetTest {
+
+  @Test
+  public void testReserveAndRelease() {
+    MemoryBudget budget = new MemoryBudget(100);
+    assertTrue(budget.reserve(60));
+    assertTrue(budget.reserve(40));
+    assertEquals(100, budget.used());
+    budget.release(40);
+    assertEquals(60, budget.used());
+    assertEquals(0, budget.rejected());
+  }
+
+  @Test
+  public void testReservationBeyondLimitIsRejected() {
+    MemoryBudget budget = new MemoryBudget(100);
+    assertTrue(budget.reserve(60));
+    assertFalse(budget.reserve(41));
+    assertEquals(60, budget.used());
+    assertEquals(1, budget.rejected());
+  }
+
+  @Test
+  public void testFits() {
+    MemoryBudget budget = new MemoryBudget(100);
+    budget.reserve(60);
+    assertTrue(budget.fits(40));
+    assertFalse(budget.fits(41));
+    assertEquals(0, budget.rejected());
+  }
+
+  @Test
+  public void testZeroLimitIsUnlimited() {
+    MemoryBudget budget = new MemoryBudget(0);
+    assertEquals(0, budget.limit());
+    assertTrue(budget.fits(Long.MAX_VALUE / 2));
+    assertTrue(budget.reserve(Long.MAX_VALUE / 2));
+    assertEquals(Long.MAX_VALUE / 2, budget.used());
+    assertEquals(0, budget.rejected());
+  }
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.event.EventLog;
+import net.kuujo.copycat.vertx.ChangeEvent;
+import net.kuujo.copycat.vertx.DefaultClusterManagerMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Change stream test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class ChangeStreamTest {
+  private final Map<Long, ChangeEvent<String, String>> entries = new ConcurrentHashMap<>();
+  private final AtomicInteger reads = new AtomicInteger();
+  private Consumer<ChangeEvent<String, String>> consumer;
+  private boolean hold;
+  private CompletableFuture<ChangeEvent<String, String>> held;
+  private EventLog<ChangeEvent<String, String>> log;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    log = (EventLog<ChangeEvent<String, String>>) Proxy.newProxyInstance(getClass().getClassLoader(),
+      new Class<?>[]{EventLog.class}, (proxy, method, args) -> {
+        switch (method.getName()) {
+          case "get":
+            reads.incrementAndGet();
+            if (hold) {
+              hold = false;
+              held = new CompletableFuture<>();
+              return held;
+            }
+            return CompletableFuture.completedFuture(entries.get((Long) args[0]));
+          case "consumer":
+            consumer = (Consumer<ChangeEvent<String, String>>) args[0];
+            return proxy;
+          default:
+            throw new UnsupportedOperationException(method.getName());
+        }
+      });
+  }
+
+  /**
+   * Commits changes to the log at the given indexes without delivering them.
+   */
+  private void commit(long from, long to) {
+    for (long i = from; i <= to; i++) {
+      entries.put(i, new ChangeEvent<>(ChangeEvent.Type.PUT, "key" + i, "value" + i));
+    }
+  }
+
+  /**
+   * Commits a change to the log at the given index and delivers it to the local node.
+   */
+  private void deliver(long index) {
+    commit(index, index);
+    consumer.accept(entries.get(index));
+  }
+
+  private ChangeFeed<String, String> open() {
+    return new ChangeFeed<>(log, new DefaultClusterManagerMetrics()).open().join();
+  }
+
+  @Test
+  public void testHeadStreamStartsAfterLastChange() {
+    commit(1, 1000);
+    ChangeFeed<String, String> feed = open();
+    assertEquals(1000, feed.lastIndex());
+
+    reads.set(0);
+    List<Long> indexes = new ArrayList<>();
+    feed.stream().handler(event -> indexes.add(event.index()));
+    assertTrue(indexes.isEmpty());
+    assertEquals(1, reads.get());
+
+    deliver(1001);
+    deliver(1002);
+    assertEquals(2, indexes.size());
+    assertEquals(1001, (long) indexes.get(0));
+    assertEquals(1002, (long) indexes.get(1));
+  }
+
+  @Test
+  public void testHeadStreamOnEmptyFeedStartsAtFirstChange() {
+    ChangeFeed<String, String> feed = open();
+    assertEquals(0, feed.lastIndex());
+
+    reads.set(0);
+    List<Long> indexes = new ArrayList<>();
+    feed.stream().handler(event -> indexes.add(event.index()));
+    assertEquals(1, reads.get());
+    deliver(1);
+    assertEquals(1, indexes.size());
+    assertEquals(1, (long) indexes.get(0));
+  }
+
+  @Test
+  public void testStreamSeeksPastCompactedChanges() {
+    commit(3000, 6000);
+    ChangeFeed<String, String> feed = open();
+    assertEquals(6000, feed.lastIndex());
+
+    reads.set(0);
+    List<Long> indexes = new ArrayList<>();
+    feed.stream(1).handler(event -> indexes.add(event.index()));
+    assertEquals(3001, indexes.size());
+    assertEquals(3000, (long) indexes.get(0));
+    assertEquals(6000, (long) indexes.get(3000));
+    // Each change is read once, plus the missing indexes and a binary search between the first and the head.
+    assertTrue(reads.get() <= 3001 + 2 + 13);
+  }
+
+  @Test
+  public void testCatchingUpWithLongFeedDoesNotOverflowStack() {
+    commit(1, 200000);
+    ChangeFeed<String, String> feed = open();
+    AtomicInteger count = new AtomicInteger();
+    feed.stream(1).handler(event -> count.incrementAndGet());
+    assertEquals(200000, count.get());
+  }
+
+  @Test
+  public void testStalledStreamProbesForward() {
+    commit(1, 10);
+    ChangeFeed<String, String> feed = open();
+    List<Long> indexes = new ArrayList<>();
+    feed.stream(1).handler(event -> indexes.add(event.index()));
+    assertEquals(10, indexes.size());
+
+    // Changes are committed and compacted without being delivered to the local node, so the stream's index is
+    // compacted before the local head is updated.
+    commit(11, 100);
+    for (long i = 1; i <= 60; i++) {
+      entries.remove(i);
+    }
+    deliver(101);
+    assertEquals(10, indexes.size());
+    deliver(102);
+    assertEquals(10 + 42, indexes.size());
+    assertEquals(61, (long) indexes.get(10));
+    assertEquals(102, (long) indexes.get(indexes.size() - 1));
+  }
+
+  @Test
+  public void testChangeDeliveredDuringReadIsNotMissed() {
+    ChangeFeed<String, String> feed = open();
+    List<Long> indexes = new ArrayList<>();
+    hold = true;
+    feed.stream().handler(event -> indexes.add(event.index()));
+    deliver(1);
+    held.complete(null);
+    assertEquals(1, indexes.size());
+    assertEquals(1, (long) indexes.get(0));
+  }
+
+  @Test
+  public void testPausedStreamIsResumedWithoutMissingChanges() {
+    ChangeFeed<String, String> feed = open();
+    List<Long> indexes = new ArrayList<>();
+    ChangeStream<String, String> stream = feed.stream();
+    stream.handler(event -> indexes.add(event.index()));
+    stream.pause();
+    deliver(1);
+    deliver(2);
+    assertTrue(indexes.isEmpty());
+    stream.resume();
+    assertEquals(2, indexes.size());
+    deliver(3);
+    assertEquals(3, indexes.size());
+  }
+
+  @Test
+  public void testUnsetHandlerStopsStream() {
+    ChangeFeed<String, String> feed = open();
+    List<Long> indexes = new ArrayList<>();
+    ChangeStream<String, String> stream = feed.stream();
+    stream.handler(event -> indexes.add(event.index()));
+    stream.handler(null);
+    reads.set(0);
+    deliver(1);
+    assertEquals(0, reads.get());
+    assertTrue(indexes.isEmpty());
+  }
+
+  @Test
+  public void testAbandonedStreamIsNotRetained() throws Exception {
+    ChangeFeed<String, String> feed = open();
+    ChangeStream<String, String> stream = feed.stream();
+    stream.handler(event -> {});
+    stream.pause();
+    deliver(1);
+    WeakReference<ChangeStream<String, String>> reference = new WeakReference<>(stream);
+    stream = null;
+    for (int i = 0; i < 50 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull(reference.get());
+  }
+
+}
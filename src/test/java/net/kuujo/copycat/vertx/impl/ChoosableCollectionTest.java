@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Choosable collection test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class ChoosableCollectionTest {
+
+  /**
+   * Chooses the given number of values from a collection.
+   */
+  private static <T> List<T> choose(ChoosableCollection<T> collection, int count) {
+    List<T> chosen = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      chosen.add(collection.choose());
+    }
+    return chosen;
+  }
+
+  @Test
+  public void testEmptyCollection() {
+    ChoosableCollection<String> collection = new ChoosableCollection<>(Collections.emptyList());
+    assertTrue(collection.isEmpty());
+    assertNull(collection.choose());
+    assertFalse(collection.iterator().hasNext());
+  }
+
+  @Test
+  public void testValuesAreChosenRoundRobin() {
+    ChoosableCollection<String> collection = new ChoosableCollection<>(Arrays.asList("a", "b", "c"));
+    assertEquals(Arrays.asList("a", "b", "c", "a", "b", "c", "a"), choose(collection, 7));
+  }
+
+  @Test
+  public void testSharedRotationContinuesAcrossCollections() {
+    AtomicInteger rotation = new AtomicInteger();
+    List<String> values = Arrays.asList("a", "b", "c");
+    assertEquals(Arrays.asList("a", "b"), choose(new ChoosableCollection<>(values, rotation, null), 2));
+    assertEquals(Arrays.asList("c", "a"), choose(new ChoosableCollection<>(values, rotation, null), 2));
+  }
+
+  @Test
+  public void testLocalValuesArePreferred() {
+    Set<String> local = new HashSet<>(Arrays.asList("b", "d"));
+    ChoosableCollection<String> collection = new ChoosableCollection<>(Arrays.asList("a", "b", "c", "d"),
+      new AtomicInteger(), local::contains);
+    assertEquals(Arrays.asList("b", "d", "b", "d"), choose(collection, 4));
+    assertFalse(collection.isEmpty());
+  }
+
+  @Test
+  public void testRemoteValuesAreChosenWithoutLocalValues() {
+    ChoosableCollection<String> collection = new ChoosableCollection<>(Arrays.asList("a", "b"), new AtomicInteger(),
+      value -> false);
+    assertEquals(Arrays.asList("a", "b", "a"), choose(collection, 3));
+  }
+
+  @Test
+  public void testIteratorReturnsAllValues() {
+    ChoosableCollection<String> collection = new ChoosableCollection<>(Arrays.asList("a", "b", "c"),
+      new AtomicInteger(), "b"::equals);
+    List<String> iterated = new ArrayList<>();
+    for (String value : collection) {
+      iterated.add(value);
+    }
+    assertEquals(Arrays.asList("a", "b", "c"), iterated);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testIteratorIsUnmodifiable() {
+    Iterator<String> iterator = new ChoosableCollection<>(new ArrayList<>(Arrays.asList("a", "b"))).iterator();
+    iterator.next();
+    iterator.remove();
+  }
+
+  @Test
+  public void testRotationOverflowKeepsChoosing() {
+    AtomicInteger rotation = new AtomicInteger(Integer.MAX_VALUE);
+    ChoosableCollection<String> collection = new ChoosableCollection<>(Arrays.asList("a", "b", "c"), rotation, null);
+    for (String value : choose(collection, 4)) {
+      assertNotNull(value);
+    }
+    assertTrue(rotation.get() < 0);
+  }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import io.vertx.core.net.impl.ServerID;
+import net.kuujo.copycat.vertx.Codec;
+import net.kuujo.copycat.vertx.CodecRegistry;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Codec serializer test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class CodecSerializerTest {
+
+  /**
+   * Writes and reads back a value.
+   */
+  private static <T> T roundTrip(CodecSerializer serializer, Object value) {
+    return serializer.readObject(serializer.writeObject(value));
+  }
+
+  /**
+   * Returns a string of the given length.
+   */
+  private static String repeat(char c, int length) {
+    char[] chars = new char[length];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+
+  @Test
+  public void testBuiltInTypes() {
+    CodecSerializer serializer = new CodecSerializer(new CodecRegistry(), 0);
+    assertNull(roundTrip(serializer, null));
+    assertEquals("foo", roundTrip(serializer, "foo"));
+    assertEquals(Boolean.TRUE, roundTrip(serializer, true));
+    assertEquals(Byte.valueOf((byte) 1), roundTrip(serializer, (byte) 1));
+    assertEquals(Short.valueOf((short) 2), roundTrip(serializer, (short) 2));
+    assertEquals(Character.valueOf('c'), roundTrip(serializer, 'c'));
+    assertEquals(Integer.valueOf(3), roundTrip(serializer, 3));
+    assertEquals(Long.valueOf(4), roundTrip(serializer, 4L));
+    assertEquals(Float.valueOf(5.5f), roundTrip(serializer, 5.5f));
+    assertEquals(Double.valueOf(6.5), roundTrip(serializer, 6.5));
+  }
+
+  @Test
+  public void testServerId() {
+    CodecSerializer serializer = new CodecSerializer(new CodecRegistry(), 0);
+    ServerID serverId = roundTrip(serializer, new ServerID(1234, "localhost"));
+    assertEquals(1234, serverId.port);
+    assertEquals("localhost", serverId.host);
+  }
+
+  @Test
+  public void testSerializableFallback() {
+    CodecSerializer serializer = new CodecSerializer(new CodecRegistry(), 0);
+    List<String> list = new ArrayList<>(Arrays.asList("a", "b"));
+    assertEquals(list, roundTrip(serializer, list));
+  }
+
+  @Test
+  public void testUserCodec() {
+    CodecRegistry registry = new CodecRegistry().register(CodecRegistry.MIN_USER_ID, Point.class, new Codec<Point>() {
+      @Override
+      public void encode(Point value, ByteBuffer buffer) {
+        buffer.putInt(value.x).putInt(value.y);
+      }
+
+      @Override
+      public Point decode(ByteBuffer buffer) {
+        return new Point(buffer.getInt(), buffer.getInt());
+      }
+    });
+    CodecSerializer serializer = new CodecSerializer(registry, 0);
+    ByteBuffer buffer = serializer.writeObject(new Point(1, 2));
+    assertEquals(2 + 8, buffer.remaining());
+    Point point = serializer.readObject(buffer);
+    assertEquals(1, point.x);
+    assertEquals(2, point.y);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReservedCodecIdIsRejected() {
+    new CodecRegistry().register(CodecRegistry.MIN_USER_ID - 1, Point.class, null);
+  }
+
+  @Test
+  public void testValueLargerThanScratchBuffer() {
+    CodecSerializer serializer = new CodecSerializer(new CodecRegistry(), 0);
+    String value = repeat('a', 100000);
+    ByteBuffer buffer = serializer.writeObject(value);
+    assertTrue(buffer.remaining() > 100000);
+    assertEquals(value, serializer.readObject(buffer));
+  }
+
+  @Test
+  public void testLargeSerializableValueIsSerializedOnce() {
+    CodecSerializer serializer = new CodecSerializer(new CodecRegistry(), 0);
+    Counted value = new Counted(new byte[1024 * 1024]);
+    ByteBuffer buffer = serializer.writeObject(value);
+    assertEquals(1, value.writes);
+    Counted result = serializer.readObject(buffer);
+    assertEquals(1024 * 1024, result.bytes.length);
+  }
+
+  @Test
+  public void testCompressibleValueIsCompressed() {
+    CodecSerializer serializer = new CodecSerializer(new CodecRegistry(), 64);
+    String value = repeat('a', 10000);
+    ByteBuffer buffer = serializer.writeObject(value);
+    assertTrue(buffer.remaining() < 1000);
+    assertEquals(value, serializer.readObject(buffer));
+  }
+
+  @Test
+  public void testValueBelowThresholdIsNotCompressed() {
+    CodecSerializer serializer = new CodecSerializer(new CodecRegistry(), 64);
+    String value = repeat('a', 32);
+    ByteBuffer buffer = serializer.writeObject(value);
+    assertEquals(0, buffer.get(1));
+    assertEquals(value, serializer.readObject(buffer));
+  }
+
+  @Test
+  public void testIncompressibleValueIsNotCompressed() {
+    CodecSerializer serializer = new CodecSerializer(new CodecRegistry(), 64);
+    byte[] value = new byte[10000];
+    new Random(0).nextBytes(value);
+    ByteBuffer buffer = serializer.writeObject(value);
+    assertEquals(0, buffer.get(1));
+    assertArrayEquals(value, serializer.<byte[]>readObject(buffer));
+  }
+
+  @Test
+  public void testCompressionIsDisabledByZeroThreshold() {
+    CodecSerializer serializer = new CodecSerializer(new CodecRegistry(), 0);
+    ByteBuffer buffer = serializer.writeObject(repeat('a', 10000));
+    assertTrue(buffer.remaining() > 10000);
+  }
+
+  /**
+   * Serializable value that counts the number of times it's serialized.
+   */
+  private static class Counted implements Serializable {
+    private final byte[] bytes;
+    private transient int writes;
+
+    private Counted(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    private void writeObject(ObjectOutputStream output) throws IOException {
+      writes++;
+      output.defaultWriteObject();
+    }
+  }
+
+  /**
+   * Value with a user codec.
+   */
+  private static class Point {
+    private final int x;
+    private final int y;
+
+    private Point(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import net.kuujo.copycat.vertx.DefaultClusterManagerMetrics;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Completion test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class CompletionTest {
+  private final List<Handler<Void>> tasks = new ArrayList<>();
+
+  /**
+   * Creates a context that queues tasks until they're run by the test.
+   */
+  @SuppressWarnings("unchecked")
+  private Context context() {
+    return (Context) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Context.class},
+      (proxy, method, args) -> {
+        switch (method.getName()) {
+          case "runOnContext":
+            tasks.add((Handler<Void>) args[0]);
+            return null;
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          case "equals":
+            return proxy == args[0];
+          default:
+            throw new UnsupportedOperationException(method.getName());
+        }
+      });
+  }
+
+  /**
+   * Runs the tasks queued on the test context.
+   */
+  private void runTasks() {
+    List<Handler<Void>> run = new ArrayList<>(tasks);
+    tasks.clear();
+    run.forEach(task -> task.handle(null));
+  }
+
+  @Test
+  public void testHandlerIsCalledDirectlyWithoutContext() {
+    AtomicReference<AsyncResult<String>> result = new AtomicReference<>();
+    new Completion<String>(null, result::set, null).succeed("foo");
+    assertTrue(result.get().succeeded());
+    assertEquals("foo", result.get().result());
+    assertTrue(tasks.isEmpty());
+  }
+
+  @Test
+  public void testHandlerIsCalledOnContext() throws Exception {
+    AtomicReference<AsyncResult<String>> result = new AtomicReference<>();
+    AtomicReference<Thread> thread = new AtomicReference<>();
+    CompletableFuture<String> future = new CompletableFuture<>();
+    future.whenComplete(new Completion<String>(context(), r -> {
+      thread.set(Thread.currentThread());
+      result.set(r);
+    }, null));
+
+    Thread completer = new Thread(() -> future.complete("foo"));
+    completer.start();
+    completer.join();
+    assertNull(result.get());
+    assertEquals(1, tasks.size());
+
+    runTasks();
+    assertSame(Thread.currentThread(), thread.get());
+    assertEquals("foo", result.get().result());
+  }
+
+  @Test
+  public void testCompletionExceptionIsUnwrapped() {
+    AtomicReference<AsyncResult<String>> result = new AtomicReference<>();
+    IllegalStateException error = new IllegalStateException("failed");
+    CompletableFuture<String> future = new CompletableFuture<>();
+    future.thenApply(value -> value).whenComplete(new Completion<>(null, result::set, null));
+    future.completeExceptionally(error);
+    assertTrue(result.get().failed());
+    assertSame(error, result.get().cause());
+    assertNull(result.get().result());
+  }
+
+  @Test
+  public void testCompletionExceptionWithoutCauseIsKept() {
+    AtomicReference<AsyncResult<String>> result = new AtomicReference<>();
+    CompletionException error = new CompletionException("failed", null);
+    new Completion<String>(null, result::set, null).fail(error);
+    assertSame(error, result.get().cause());
+  }
+
+  @Test
+  public void testRunOnContextWithoutContextRunsTaskDirectly() {
+    AtomicReference<Boolean> ran = new AtomicReference<>(false);
+    CompletableFuture<Void> future = Completion.runOnContext(null, () -> ran.set(true));
+    assertTrue(ran.get());
+    assertTrue(future.isDone());
+  }
+
+  @Test
+  public void testRunOnContextRunsTaskOnContext() {
+    AtomicReference<Boolean> ran = new AtomicReference<>(false);
+    CompletableFuture<Void> future = Completion.runOnContext(context(), () -> ran.set(true));
+    assertFalse(ran.get());
+    assertFalse(future.isDone());
+    runTasks();
+    assertTrue(ran.get());
+    assertTrue(future.isDone());
+  }
+
+  @Test
+  public void testRunOnContextFailsFutureIfTaskThrows() {
+    IllegalStateException error = new IllegalStateException("failed");
+    CompletableFuture<Void> future = Completion.runOnContext(context(), () -> {
+      throw error;
+    });
+    runTasks();
+    assertTrue(future.isCompletedExceptionally());
+    try {
+      future.join();
+      fail("expected the task to fail");
+    } catch (CompletionException e) {
+      assertSame(error, e.getCause());
+    }
+  }
+
+  @Test
+  public void testDirectDispatchIsRecorded() {
+    DefaultClusterManagerMetrics metrics = new DefaultClusterManagerMetrics();
+    AtomicReference<AsyncResult<String>> result = new AtomicReference<>();
+    new Completion<String>(result::set, metrics).succeed("foo");
+    assertEquals("foo", result.get().result());
+    assertEquals(1, metrics.dispatches());
+    assertEquals(0, metrics.maxDispatchLatency());
+  }
+
+  @Test
+  public void testContextDispatchDelayIsRecorded() throws Exception {
+    DefaultClusterManagerMetrics metrics = new DefaultClusterManagerMetrics();
+    AtomicReference<AsyncResult<String>> result = new AtomicReference<>();
+    CompletableFuture<String> future = new CompletableFuture<>();
+    future.whenComplete(new Completion<>(context(), result::set, metrics));
+    future.complete("foo");
+    assertEquals(0, metrics.dispatches());
+
+    Thread.sleep(5);
+    runTasks();
+    assertEquals("foo", result.get().result());
+    assertEquals(1, metrics.dispatches());
+    assertTrue(metrics.maxDispatchLatency() >= 5000000);
+  }
+
+  @Test
+  public void testDispatchIsNotRecordedWithoutMetrics() {
+    AtomicReference<AsyncResult<String>> result = new AtomicReference<>();
+    new Completion<String>(context(), result::set, null).fail(new IllegalStateException());
+    runTasks();
+    assertTrue(result.get().failed());
+  }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Concurrency limiter test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class ConcurrencyLimiterTest {
+
+  @Test
+  public void testTasksBeyondLimitAreQueued() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(2);
+    List<CompletableFuture<Integer>> tasks = new ArrayList<>();
+    List<CompletableFuture<Integer>> results = new ArrayList<>();
+    AtomicInteger started = new AtomicInteger();
+    for (int i = 0; i < 4; i++) {
+      CompletableFuture<Integer> task = new CompletableFuture<>();
+      tasks.add(task);
+      results.add(limiter.submit(() -> {
+        started.incrementAndGet();
+        return task;
+      }));
+    }
+    assertEquals(2, started.get());
+
+    tasks.get(0).complete(0);
+    assertEquals(3, started.get());
+    assertEquals(Integer.valueOf(0), results.get(0).join());
+    assertFalse(results.get(2).isDone());
+
+    tasks.get(1).complete(1);
+    assertEquals(4, started.get());
+  }
+
+  @Test
+  public void testQueuedTasksStartInSubmissionOrder() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+    List<Integer> order = new ArrayList<>();
+    CompletableFuture<Void> first = new CompletableFuture<>();
+    limiter.submit(() -> first);
+    for (int i = 0; i < 3; i++) {
+      int index = i;
+      limiter.submit(() -> {
+        order.add(index);
+        return CompletableFuture.completedFuture(null);
+      });
+    }
+    assertTrue(order.isEmpty());
+    first.complete(null);
+    assertEquals(Arrays.asList(0, 1, 2), order);
+  }
+
+  @Test
+  public void testLongQueueOfImmediateTasksDoesNotOverflowStack() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+    CompletableFuture<Void> first = new CompletableFuture<>();
+    limiter.submit(() -> first);
+    List<CompletableFuture<Integer>> results = new ArrayList<>();
+    for (int i = 0; i < 200000; i++) {
+      int index = i;
+      results.add(limiter.submit(() -> CompletableFuture.completedFuture(index)));
+    }
+    first.complete(null);
+    for (int i = 0; i < results.size(); i++) {
+      assertEquals(Integer.valueOf(i), results.get(i).getNow(null));
+    }
+    assertEquals("next", limiter.submit(() -> CompletableFuture.completedFuture("next")).getNow(null));
+  }
+
+  @Test
+  public void testFailedTaskReleasesPermit() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+    CompletableFuture<Void> task = new CompletableFuture<>();
+    CompletableFuture<Void> failed = limiter.submit(() -> task);
+    CompletableFuture<String> next = limiter.submit(() -> CompletableFuture.completedFuture("next"));
+    assertFalse(next.isDone());
+
+    task.completeExceptionally(new IllegalStateException("failed"));
+    assertTrue(failed.isCompletedExceptionally());
+    assertEquals("next", next.join());
+  }
+
+  @Test
+  public void testThrowingTaskReleasesPermit() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+    CompletableFuture<Void> failed = limiter.submit(() -> {
+      throw new IllegalStateException("failed");
+    });
+    assertTrue(failed.isCompletedExceptionally());
+    assertEquals("next", limiter.submit(() -> CompletableFuture.completedFuture("next")).join());
+  }
+
+  @Test
+  public void testNonPositiveLimitIsUnlimited() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(0);
+    AtomicInteger started = new AtomicInteger();
+    for (int i = 0; i < 100; i++) {
+      limiter.submit(() -> {
+        started.incrementAndGet();
+        return new CompletableFuture<Void>();
+      });
+    }
+    assertEquals(100, started.get());
+  }
+
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.VertxException;
+import net.kuujo.copycat.collections.AsyncMap;
+import net.kuujo.copycat.vertx.DefaultClusterManagerMetrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copycat asynchronous map test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class CopycatAsyncMapTest {
+  private ScheduledExecutorService scheduler;
+  private ConcurrentMap<String, String> store;
+  private Queue<Runnable> writers;
+  private CopycatAsyncMap<String, String> map;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    store = new ConcurrentHashMap<>();
+    writers = new ConcurrentLinkedQueue<>();
+    InvocationHandler handler = (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "get":
+          String value = store.get(args[0]);
+          Runnable writer = writers.poll();
+          if (writer != null) {
+            writer.run();
+          }
+          return CompletableFuture.completedFuture(value);
+        case "put":
+          return CompletableFuture.completedFuture(store.put((String) args[0], (String) args[1]));
+        case "putIfAbsent":
+          return CompletableFuture.completedFuture(store.putIfAbsent((String) args[0], (String) args[1]));
+        case "remove":
+          if (args.length == 1) {
+            return CompletableFuture.completedFuture(store.remove(args[0]));
+          }
+          return CompletableFuture.completedFuture(store.remove(args[0], args[1]));
+        case "replace":
+          if (args.length == 2) {
+            return CompletableFuture.completedFuture(store.replace((String) args[0], (String) args[1]));
+          }
+          return CompletableFuture.completedFuture(
+            store.replace((String) args[0], (String) args[1], (String) args[2]));
+        default:
+          throw new UnsupportedOperationException(method.getName());
+      }
+    };
+    Class<?>[] interfaces = {AsyncMap.class};
+    AsyncMap<String, String> copycatMap = (AsyncMap<String, String>) Proxy.newProxyInstance(
+      getClass().getClassLoader(), interfaces, handler);
+    map = new CopycatAsyncMap<>(copycatMap, null, null, scheduler, null, new DefaultClusterManagerMetrics());
+  }
+
+  @After
+  public void tearDown() {
+    map.close();
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Returns a handler that completes the given future.
+   */
+  private static <T> Handler<AsyncResult<T>> complete(CompletableFuture<T> future) {
+    return result -> {
+      if (result.succeeded()) {
+        future.complete(result.result());
+      } else {
+        future.completeExceptionally(result.cause());
+      }
+    };
+  }
+
+  /**
+   * Waits until the store maps the key to the given value.
+   */
+  private void await(String key, String value) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!Objects.equals(store.get(key), value) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(value, store.get(key));
+  }
+
+  @Test
+  public void testKeyIsRemovedAfterTtl() throws Exception {
+    CompletableFuture<Void> put = new CompletableFuture<>();
+    map.put("a", "1", 100, complete(put));
+    put.get(5, TimeUnit.SECONDS);
+    assertEquals("1", store.get("a"));
+    await("a", null);
+  }
+
+  @Test
+  public void testOverwrittenKeyIsNotExpired() throws Exception {
+    CompletableFuture<Void> put = new CompletableFuture<>();
+    map.put("a", "1", 100, complete(put));
+    put.get(5, TimeUnit.SECONDS);
+    store.put("a", "2");
+    CompletableFuture<Void> other = new CompletableFuture<>();
+    map.put("b", "1", 100, complete(other));
+    other.get(5, TimeUnit.SECONDS);
+    await("b", null);
+    assertEquals("2", store.get("a"));
+  }
+
+  @Test
+  public void testCloseLeavesPendingKeysInPlace() throws Exception {
+    CompletableFuture<Void> put = new CompletableFuture<>();
+    map.put("a", "1", 100, complete(put));
+    put.get(5, TimeUnit.SECONDS);
+    map.close();
+    assertEquals("1", store.get("a"));
+    Thread.sleep(300);
+    assertEquals("1", store.get("a"));
+
+    CompletableFuture<Void> after = new CompletableFuture<>();
+    map.put("b", "1", 100, complete(after));
+    after.get(5, TimeUnit.SECONDS);
+    Thread.sleep(300);
+    assertEquals("1", store.get("b"));
+  }
+
+  /**
+   * Computes a value for a key, returning the new value.
+   */
+  private String compute(String key, BiFunction<String, String, String> function) throws Exception {
+    CompletableFuture<String> future = new CompletableFuture<>();
+    map.compute(key, function, complete(future));
+    return future.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testComputePutsAbsentKey() throws Exception {
+    assertEquals("1", compute("a", (key, current) -> {
+      assertNull(current);
+      return "1";
+    }));
+    assertEquals("1", store.get("a"));
+  }
+
+  @Test
+  public void testComputeReplacesValue() throws Exception {
+    store.put("a", "1");
+    assertEquals("12", compute("a", (key, current) -> current + "2"));
+    assertEquals("12", store.get("a"));
+  }
+
+  @Test
+  public void testComputeRemovesKeyWhenFunctionReturnsNull() throws Exception {
+    store.put("a", "1");
+    assertNull(compute("a", (key, current) -> null));
+    assertFalse(store.containsKey("a"));
+  }
+
+  @Test
+  public void testComputeLeavesAbsentKeyAbsent() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    assertNull(compute("a", (key, current) -> {
+      calls.incrementAndGet();
+      return null;
+    }));
+    assertEquals(1, calls.get());
+    assertFalse(store.containsKey("a"));
+  }
+
+  @Test
+  public void testComputeRetriesWhenValueChanges() throws Exception {
+    store.put("a", "1");
+    writers.add(() -> store.put("a", "2"));
+    AtomicInteger calls = new AtomicInteger();
+    assertEquals("2x", compute("a", (key, current) -> {
+      calls.incrementAndGet();
+      return current + "x";
+    }));
+    assertEquals(2, calls.get());
+    assertEquals("2x", store.get("a"));
+  }
+
+  @Test
+  public void testComputeRetriesWhenAbsentKeyIsPut() throws Exception {
+    writers.add(() -> store.put("a", "2"));
+    assertEquals("2x", compute("a", (key, current) -> current == null ? "1" : current + "x"));
+    assertEquals("2x", store.get("a"));
+  }
+
+  @Test
+  public void testComputeRetriesWhenRemovedKeyChanges() throws Exception {
+    store.put("a", "1");
+    writers.add(() -> store.put("a", "2"));
+    AtomicInteger calls = new AtomicInteger();
+    assertNull(compute("a", (key, current) -> {
+      calls.incrementAndGet();
+      return null;
+    }));
+    assertEquals(2, calls.get());
+    assertFalse(store.containsKey("a"));
+  }
+
+  @Test
+  public void testComputeFailsAfterMaxAttempts() throws Exception {
+    store.put("a", "0");
+    AtomicInteger writes = new AtomicInteger();
+    for (int i = 0; i < 100; i++) {
+      writers.add(() -> store.put("a", String.valueOf(writes.incrementAndGet())));
+    }
+    AtomicInteger calls = new AtomicInteger();
+    try {
+      compute("a", (key, current) -> {
+        calls.incrementAndGet();
+        return current + "x";
+      });
+      fail("expected the computation to fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof VertxException);
+    }
+    assertEquals(64, calls.get());
+    assertEquals(String.valueOf(writes.get()), store.get("a"));
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    CompletableFuture<String> absent = new CompletableFuture<>();
+    map.merge("a", "1", (current, value) -> current + value, complete(absent));
+    assertEquals("1", absent.get(5, TimeUnit.SECONDS));
+
+    CompletableFuture<String> merged = new CompletableFuture<>();
+    map.merge("a", "2", (current, value) -> current + value, complete(merged));
+    assertEquals("12", merged.get(5, TimeUnit.SECONDS));
+
+    CompletableFuture<String> removed = new CompletableFuture<>();
+    map.merge("a", "3", (current, value) -> null, complete(removed));
+    assertNull(removed.get(5, TimeUnit.SECONDS));
+    assertFalse(store.containsKey("a"));
+  }
+
+}
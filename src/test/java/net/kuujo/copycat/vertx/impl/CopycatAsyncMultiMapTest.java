@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.spi.cluster.ChoosableIterable;
+import net.kuujo.copycat.collections.AsyncMultiMap;
+import net.kuujo.copycat.vertx.DefaultClusterManagerMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copycat asynchronous multimap test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class CopycatAsyncMultiMapTest {
+  private Map<String, List<String>> store;
+  private CopycatAsyncMultiMap<String, String> map;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    store = new ConcurrentHashMap<>();
+    InvocationHandler handler = (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "get":
+          Collection<String> values = store.get(args[0]);
+          return CompletableFuture.completedFuture(values != null ? new ArrayList<>(values) : new ArrayList<>());
+        case "put":
+          return CompletableFuture.completedFuture(store.computeIfAbsent((String) args[0], k -> new ArrayList<>())
+            .add((String) args[1]));
+        default:
+          throw new UnsupportedOperationException(method.getName());
+      }
+    };
+    Class<?>[] interfaces = {AsyncMultiMap.class};
+    AsyncMultiMap<String, String> copycatMap = (AsyncMultiMap<String, String>) Proxy.newProxyInstance(
+      getClass().getClassLoader(), interfaces, handler);
+    map = new CopycatAsyncMultiMap<>(copycatMap, null, null, null, new DefaultClusterManagerMetrics());
+  }
+
+  /**
+   * Returns a handler that completes the given future.
+   */
+  private static <T> Handler<AsyncResult<T>> complete(CompletableFuture<T> future) {
+    return result -> {
+      if (result.succeeded()) {
+        future.complete(result.result());
+      } else {
+        future.completeExceptionally(result.cause());
+      }
+    };
+  }
+
+  private ChoosableIterable<String> get(String key) {
+    CompletableFuture<ChoosableIterable<String>> future = new CompletableFuture<>();
+    map.get(key, complete(future));
+    return future.join();
+  }
+
+  @Test
+  public void testRotationContinuesAcrossLookups() {
+    store.put("a", new ArrayList<>(Arrays.asList("r1", "r2", "r3")));
+    List<String> chosen = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      chosen.add(get("a").choose());
+    }
+    assertEquals(Arrays.asList("r1", "r2", "r3", "r1"), chosen);
+  }
+
+  @Test
+  public void testValuesAddedLocallyArePreferred() {
+    store.put("a", new ArrayList<>(Arrays.asList("r1", "r2")));
+    CompletableFuture<Void> add = new CompletableFuture<>();
+    map.add("a", "local", complete(add));
+    add.join();
+
+    for (int i = 0; i < 3; i++) {
+      ChoosableIterable<String> values = get("a");
+      assertEquals("local", values.choose());
+      int count = 0;
+      for (String value : values) {
+        count++;
+      }
+      assertEquals(3, count);
+    }
+  }
+
+  @Test
+  public void testMissingKeyIsEmpty() {
+    ChoosableIterable<String> values = get("a");
+    assertTrue(values.isEmpty());
+    assertNull(values.choose());
+  }
+
+}
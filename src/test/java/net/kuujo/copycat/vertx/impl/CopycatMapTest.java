@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.collections.AsyncMap;
+import net.kuujo.copycat.vertx.DefaultClusterManagerMetrics;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copycat map test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class CopycatMapTest {
+
+  /**
+   * Creates a synchronous map over a map that supports only key set and get reads, recording the reads.
+   */
+  @SuppressWarnings("unchecked")
+  private static CopycatMap<String, String> map(Map<String, String> entries, List<String> reads) {
+    InvocationHandler handler = (proxy, method, args) -> {
+      reads.add(method.getName());
+      switch (method.getName()) {
+        case "keySet":
+          return CompletableFuture.completedFuture(new LinkedHashSet<>(entries.keySet()));
+        case "get":
+          return CompletableFuture.completedFuture(entries.get(args[0]));
+        default:
+          throw new UnsupportedOperationException(method.getName());
+      }
+    };
+    Class<?>[] interfaces = {AsyncMap.class};
+    AsyncMap<String, String> map = (AsyncMap<String, String>) Proxy.newProxyInstance(
+      CopycatMapTest.class.getClassLoader(), interfaces, handler);
+    return new CopycatMap<>(CompletableFuture.completedFuture(map), CompletableFuture.completedFuture(null), null,
+      new DefaultClusterManagerMetrics());
+  }
+
+  @Test
+  public void testEntriesAreReadByKey() {
+    Map<String, String> entries = new LinkedHashMap<>();
+    entries.put("a", "1");
+    entries.put("b", "2");
+    List<String> reads = new ArrayList<>();
+    Map<String, String> result = new LinkedHashMap<>();
+    for (Map.Entry<String, String> entry : map(entries, reads).entrySet()) {
+      result.put(entry.getKey(), entry.getValue());
+    }
+    assertEquals(entries, result);
+    assertEquals(1, reads.stream().filter("keySet"::equals).count());
+    assertEquals(2, reads.stream().filter("get"::equals).count());
+  }
+
+  @Test
+  public void testRemovedKeysAreSkipped() {
+    Map<String, String> entries = new LinkedHashMap<>();
+    entries.put("a", "1");
+    entries.put("b", "2");
+    List<String> reads = new ArrayList<>();
+    CopycatMap<String, String> map = map(entries, reads);
+    List<String> values = new ArrayList<>();
+    Iterator<String> iterator = map.values().iterator();
+    entries.remove("b");
+    while (iterator.hasNext()) {
+      values.add(iterator.next());
+    }
+    assertEquals(1, values.size());
+    assertEquals("1", values.get(0));
+  }
+
+  @Test
+  public void testKeysAreReadWithoutValues() {
+    Map<String, String> entries = new LinkedHashMap<>();
+    entries.put("a", "1");
+    entries.put("b", "2");
+    List<String> reads = new ArrayList<>();
+    List<String> keys = new ArrayList<>();
+    for (String key : map(entries, reads).keySet()) {
+      keys.add(key);
+    }
+    assertEquals(2, keys.size());
+    assertFalse(reads.contains("get"));
+  }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.atomic.AsyncAtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Counter shard test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class CounterShardTest {
+  private static final long FLUSH_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+  private ScheduledExecutorService scheduler;
+  private AtomicLong value;
+  private Queue<Runnable> deferred;
+  private volatile boolean defer;
+  private volatile Throwable failure;
+  private CounterShard shard;
+
+  @Before
+  public void setUp() {
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    value = new AtomicLong();
+    deferred = new ConcurrentLinkedQueue<>();
+    InvocationHandler handler = (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "addAndGet":
+          CompletableFuture<Long> future = new CompletableFuture<>();
+          Runnable commit = () -> {
+            if (failure != null) {
+              future.completeExceptionally(failure);
+              failure = null;
+            } else {
+              future.complete(value.addAndGet((Long) args[0]));
+            }
+          };
+          if (defer) {
+            deferred.add(commit);
+          } else {
+            commit.run();
+          }
+          return future;
+        case "get":
+          return CompletableFuture.completedFuture(value.get());
+        case "compareAndSet":
+          return CompletableFuture.completedFuture(value.compareAndSet((Long) args[0], (Long) args[1]));
+        default:
+          throw new UnsupportedOperationException(method.getName());
+      }
+    };
+    Class<?>[] interfaces = {AsyncAtomicLong.class};
+    AsyncAtomicLong counter = (AsyncAtomicLong) Proxy.newProxyInstance(getClass().getClassLoader(), interfaces,
+      handler);
+    shard = new CounterShard(counter, scheduler, FLUSH_INTERVAL);
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void testAddReturnsLocalEstimate() {
+    assertEquals(1, shard.add(1));
+    assertEquals(3, shard.add(2));
+    assertEquals(0, value.get());
+  }
+
+  @Test
+  public void testFlushCommitsPendingDelta() throws Exception {
+    shard.add(5);
+    shard.flush().get(5, TimeUnit.SECONDS);
+    assertEquals(5, value.get());
+    assertEquals(6, shard.add(1));
+  }
+
+  @Test
+  public void testEstimateDoesNotGoBackwardsDuringFlush() throws Exception {
+    defer = true;
+    assertEquals(5, shard.add(5));
+    CompletableFuture<Void> flush = shard.flush();
+    assertEquals(6, shard.add(1));
+
+    deferred.poll().run();
+    flush.get(5, TimeUnit.SECONDS);
+    assertEquals(7, shard.add(1));
+  }
+
+  @Test
+  public void testFlushesAreAppliedInOrder() throws Exception {
+    defer = true;
+    shard.add(1);
+    CompletableFuture<Void> first = shard.flush();
+    shard.add(2);
+    CompletableFuture<Void> second = shard.flush();
+    assertEquals(1, deferred.size());
+
+    deferred.poll().run();
+    first.get(5, TimeUnit.SECONDS);
+    deferred.poll().run();
+    second.get(5, TimeUnit.SECONDS);
+    assertEquals(3, value.get());
+    assertEquals(3, shard.add(0));
+  }
+
+  @Test
+  public void testFailedFlushIsRetried() throws Exception {
+    failure = new IllegalStateException("failed");
+    shard.add(5);
+    try {
+      shard.flush().get(5, TimeUnit.SECONDS);
+      fail("expected the flush to fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+    assertEquals(0, value.get());
+    assertEquals(5, shard.add(0));
+
+    shard.flush().get(5, TimeUnit.SECONDS);
+    assertEquals(5, value.get());
+  }
+
+  @Test
+  public void testGetIncludesRemoteUpdates() throws Exception {
+    value.set(10);
+    shard.add(1);
+    assertEquals(11, (long) shard.get().get(5, TimeUnit.SECONDS));
+    assertEquals(12, shard.add(1));
+  }
+
+  @Test
+  public void testCompareAndSetFlushesPendingDelta() throws Exception {
+    shard.add(3);
+    assertTrue(shard.compareAndSet(3, 10).get(5, TimeUnit.SECONDS));
+    assertEquals(10, value.get());
+    assertEquals(10, shard.add(0));
+  }
+
+  @Test
+  public void testCloseFlushesRemainingDelta() throws Exception {
+    shard.add(4);
+    shard.close().get(5, TimeUnit.SECONDS);
+    assertEquals(4, value.get());
+  }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.collections.AsyncMap;
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+/**
+ * Entry read stream test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class EntryReadStreamTest {
+
+  /**
+   * Returns entries mapping each of the given keys to itself.
+   */
+  private static List<Map.Entry<Integer, Integer>> entries(List<Integer> keys) {
+    List<Map.Entry<Integer, Integer>> entries = new ArrayList<>(keys.size());
+    for (Integer key : keys) {
+      entries.add(new AbstractMap.SimpleImmutableEntry<>(key, key));
+    }
+    return entries;
+  }
+
+  /**
+   * Creates a stream over the keys {@code 0} to {@code count - 1} whose pages are read with the given function.
+   */
+  private static EntryReadStream<Integer, Integer> stream(int count, int pageSize,
+    Function<List<Integer>, CompletableFuture<List<Map.Entry<Integer, Integer>>>> pageReader) {
+    List<Integer> keys = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      keys.add(i);
+    }
+    CompletableFuture<AsyncMap<Integer, Integer>> map = CompletableFuture.completedFuture(null);
+    return new EntryReadStream<>(new MapCursor<>(map, m -> CompletableFuture.completedFuture(keys),
+      (m, page) -> pageReader.apply(page), pageSize));
+  }
+
+  /**
+   * Creates a stream over the keys {@code 0} to {@code count - 1} whose pages are read synchronously.
+   */
+  private static EntryReadStream<Integer, Integer> stream(int count, int pageSize) {
+    return stream(count, pageSize, keys -> CompletableFuture.completedFuture(entries(keys)));
+  }
+
+  @Test
+  public void testStreamsAllEntries() {
+    EntryReadStream<Integer, Integer> stream = stream(10, 3);
+    List<Integer> keys = new ArrayList<>();
+    AtomicBoolean ended = new AtomicBoolean();
+    stream.endHandler(v -> ended.set(true));
+    stream.handler(entry -> keys.add(entry.getKey()));
+    assertTrue(ended.get());
+    assertEquals(10, keys.size());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Integer.valueOf(i), keys.get(i));
+    }
+  }
+
+  @Test
+  public void testSynchronousPagesDoNotOverflowStack() {
+    int count = 200000;
+    EntryReadStream<Integer, Integer> stream = stream(count, 1);
+    AtomicInteger received = new AtomicInteger();
+    AtomicBoolean ended = new AtomicBoolean();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    stream.exceptionHandler(failure::set);
+    stream.endHandler(v -> ended.set(true));
+    stream.handler(entry -> received.incrementAndGet());
+    assertNull(failure.get());
+    assertTrue(ended.get());
+    assertEquals(count, received.get());
+  }
+
+  @Test
+  public void testAsynchronousPagesAreDelivered() {
+    List<List<Integer>> pages = new ArrayList<>();
+    List<CompletableFuture<List<Map.Entry<Integer, Integer>>>> reads = new ArrayList<>();
+    EntryReadStream<Integer, Integer> stream = stream(5, 2, keys -> {
+      CompletableFuture<List<Map.Entry<Integer, Integer>>> future = new CompletableFuture<>();
+      pages.add(keys);
+      reads.add(future);
+      return future;
+    });
+    AtomicInteger received = new AtomicInteger();
+    AtomicBoolean ended = new AtomicBoolean();
+    stream.endHandler(v -> ended.set(true));
+    stream.handler(entry -> received.incrementAndGet());
+    assertEquals(1, reads.size());
+    assertEquals(0, received.get());
+
+    reads.get(0).complete(entries(pages.get(0)));
+    assertEquals(2, received.get());
+    assertEquals(2, reads.size());
+    reads.get(1).complete(entries(pages.get(1)));
+    reads.get(2).complete(entries(pages.get(2)));
+    assertEquals(5, received.get());
+    assertTrue(ended.get());
+  }
+
+  @Test
+  public void testPausedStreamStopsReading() {
+    AtomicInteger reads = new AtomicInteger();
+    EntryReadStream<Integer, Integer> stream = stream(10, 2, keys -> {
+      reads.incrementAndGet();
+      return CompletableFuture.completedFuture(entries(keys));
+    });
+    List<Integer> keys = new ArrayList<>();
+    AtomicBoolean ended = new AtomicBoolean();
+    stream.endHandler(v -> ended.set(true));
+    stream.handler(entry -> {
+      keys.add(entry.getKey());
+      if (keys.size() == 3) {
+        stream.pause();
+      }
+    });
+    assertEquals(3, keys.size());
+    assertEquals(2, reads.get());
+    assertFalse(ended.get());
+
+    stream.resume();
+    assertEquals(10, keys.size());
+    assertEquals(5, reads.get());
+    assertTrue(ended.get());
+  }
+
+  @Test
+  public void testFailedReadIsReportedToExceptionHandler() {
+    IllegalStateException error = new IllegalStateException("failed");
+    EntryReadStream<Integer, Integer> stream = stream(10, 2, keys -> {
+      CompletableFuture<List<Map.Entry<Integer, Integer>>> future = new CompletableFuture<>();
+      future.completeExceptionally(error);
+      return future;
+    });
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    AtomicBoolean ended = new AtomicBoolean();
+    stream.exceptionHandler(failure::set);
+    stream.endHandler(v -> ended.set(true));
+    stream.handler(entry -> fail("unexpected entry"));
+    assertSame(error, failure.get());
+    assertFalse(ended.get());
+  }
+
+  @Test
+  public void testAsynchronousFailureIsReportedToExceptionHandler() {
+    CompletableFuture<List<Map.Entry<Integer, Integer>>> read = new CompletableFuture<>();
+    EntryReadStream<Integer, Integer> stream = stream(10, 2, keys -> read);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    stream.exceptionHandler(failure::set);
+    stream.handler(entry -> fail("unexpected entry"));
+    assertNull(failure.get());
+
+    IllegalStateException error = new IllegalStateException("failed");
+    read.completeExceptionally(error);
+    assertSame(error, failure.get());
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Latency histogram test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class LatencyHistogramTest {
+
+  /**
+   * Asserts that a value is within the histogram's precision of the expected value.
+   */
+  private static void assertWithinPrecision(long expected, long actual) {
+    assertTrue("expected " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 16);
+  }
+
+  @Test
+  public void testEmptyHistogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.count());
+    assertEquals(0, histogram.mean());
+    assertEquals(0, histogram.max());
+    assertEquals(0, histogram.percentile(99));
+  }
+
+  @Test
+  public void testCountMeanAndMax() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(10);
+    histogram.record(20);
+    histogram.record(60);
+    assertEquals(3, histogram.count());
+    assertEquals(30, histogram.mean());
+    assertEquals(60, histogram.max());
+  }
+
+  @Test
+  public void testSmallValuesAreExact() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 16; i++) {
+      histogram.record(i);
+    }
+    assertEquals(0, histogram.percentile(0));
+    assertEquals(7, histogram.percentile(50));
+    assertEquals(15, histogram.percentile(100));
+  }
+
+  @Test
+  public void testPercentilesAreWithinPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100000; i++) {
+      histogram.record(i);
+    }
+    assertWithinPrecision(50000, histogram.percentile(50));
+    assertWithinPrecision(90000, histogram.percentile(90));
+    assertWithinPrecision(99000, histogram.percentile(99));
+    assertEquals(100000, histogram.percentile(100));
+  }
+
+  @Test
+  public void testPercentileNeverExceedsMax() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(1000);
+    assertEquals(1000, histogram.percentile(50));
+    assertEquals(1000, histogram.percentile(100));
+  }
+
+  @Test
+  public void testNegativeValuesAreRecordedAsZero() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    assertEquals(1, histogram.count());
+    assertEquals(0, histogram.max());
+    assertEquals(0, histogram.percentile(100));
+  }
+
+  @Test
+  public void testLargeValues() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(Long.MAX_VALUE);
+    histogram.record(1L << 40);
+    assertEquals(Long.MAX_VALUE, histogram.max());
+    assertWithinPrecision(1L << 40, histogram.percentile(50));
+    assertEquals(Long.MAX_VALUE, histogram.percentile(100));
+  }
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import io.vertx.core.VertxException;
+import io.vertx.core.shareddata.Lock;
+import net.kuujo.copycat.collections.AsyncLock;
+import net.kuujo.copycat.vertx.LockStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Lock coordinator test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class LockCoordinatorTest {
+  private ScheduledExecutorService scheduler;
+  private LockStats stats;
+  private AtomicInteger locks;
+  private AtomicInteger unlocks;
+  private Queue<Throwable> unlockFailures;
+  private AsyncLock lock;
+
+  @Before
+  public void setUp() {
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    stats = new LockStats();
+    locks = new AtomicInteger();
+    unlocks = new AtomicInteger();
+    unlockFailures = new ConcurrentLinkedQueue<>();
+    InvocationHandler handler = (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "lock":
+          locks.incrementAndGet();
+          return CompletableFuture.completedFuture(null);
+        case "unlock":
+          unlocks.incrementAndGet();
+          CompletableFuture<Void> future = new CompletableFuture<>();
+          Throwable failure = unlockFailures.poll();
+          if (failure != null) {
+            future.completeExceptionally(failure);
+          } else {
+            future.complete(null);
+          }
+          return future;
+        case "close":
+          return CompletableFuture.completedFuture(null);
+        default:
+          throw new UnsupportedOperationException(method.getName());
+      }
+    };
+    Class<?>[] interfaces = {AsyncLock.class};
+    lock = (AsyncLock) Proxy.newProxyInstance(getClass().getClassLoader(), interfaces, handler);
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Requests the lock from the coordinator.
+   */
+  private CompletableFuture<Lock> acquire(LockCoordinator coordinator, long requestTime, long timeout) {
+    CompletableFuture<Lock> future = new CompletableFuture<>();
+    coordinator.acquire(requestTime, timeout, () -> {}, new Completion<>(result -> {
+      if (result.succeeded()) {
+        future.complete(result.result());
+      } else {
+        future.completeExceptionally(result.cause());
+      }
+    }));
+    return future;
+  }
+
+  /**
+   * Requests the lock from the coordinator now.
+   */
+  private CompletableFuture<Lock> acquire(LockCoordinator coordinator, long timeout) {
+    return acquire(coordinator, System.nanoTime(), timeout);
+  }
+
+  @Test
+  public void testAcquireAndRelease() throws Exception {
+    LockCoordinator coordinator = new LockCoordinator("test", lock, scheduler, 0, stats);
+    Lock held = acquire(coordinator, 1000).get(5, TimeUnit.SECONDS);
+    assertEquals(1, locks.get());
+    held.release();
+    assertEquals(1, unlocks.get());
+    assertEquals(1, stats.acquisitions());
+  }
+
+  @Test
+  public void testWaitersAreGrantedInOrder() throws Exception {
+    LockCoordinator coordinator = new LockCoordinator("test", lock, scheduler, 0, stats);
+    Lock first = acquire(coordinator, 1000).get(5, TimeUnit.SECONDS);
+    CompletableFuture<Lock> second = acquire(coordinator, 5000);
+    CompletableFuture<Lock> third = acquire(coordinator, 5000);
+    assertFalse(second.isDone());
+    assertFalse(third.isDone());
+
+    first.release();
+    Lock secondLock = second.get(5, TimeUnit.SECONDS);
+    assertFalse(third.isDone());
+    secondLock.release();
+    third.get(5, TimeUnit.SECONDS).release();
+    assertEquals(3, stats.acquisitions());
+  }
+
+  @Test
+  public void testWaiterTimesOut() throws Exception {
+    LockCoordinator coordinator = new LockCoordinator("test", lock, scheduler, 0, stats);
+    Lock held = acquire(coordinator, 1000).get(5, TimeUnit.SECONDS);
+    try {
+      acquire(coordinator, 50).get(5, TimeUnit.SECONDS);
+      fail("expected the lock request to time out");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof VertxException);
+    }
+    assertEquals(1, stats.timeouts());
+    held.release();
+  }
+
+  @Test
+  public void testTimeoutIncludesTimeBeforeAcquire() throws Exception {
+    LockCoordinator coordinator = new LockCoordinator("test", lock, scheduler, 0, stats);
+    long requestTime = System.nanoTime() - TimeUnit.SECONDS.toNanos(2);
+    try {
+      acquire(coordinator, requestTime, 1000).get(5, TimeUnit.SECONDS);
+      fail("expected the lock request to time out");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof VertxException);
+    }
+    assertEquals(0, locks.get());
+    assertEquals(1, stats.timeouts());
+  }
+
+  @Test
+  public void testLeasedLockIsReacquiredLocally() throws Exception {
+    LockCoordinator coordinator = new LockCoordinator("test", lock, scheduler, 10000, stats);
+    acquire(coordinator, 1000).get(5, TimeUnit.SECONDS).release();
+    acquire(coordinator, 1000).get(5, TimeUnit.SECONDS).release();
+    assertEquals(1, locks.get());
+    assertEquals(0, unlocks.get());
+
+    coordinator.close().get(5, TimeUnit.SECONDS);
+    assertEquals(1, unlocks.get());
+  }
+
+  @Test
+  public void testFailedUnlockIsRetried() throws Exception {
+    LockCoordinator coordinator = new LockCoordinator("test", lock, scheduler, 0, stats);
+    unlockFailures.add(new IllegalStateException("failed"));
+    Lock first = acquire(coordinator, 1000).get(5, TimeUnit.SECONDS);
+    CompletableFuture<Lock> second = acquire(coordinator, 5000);
+    first.release();
+    second.get(5, TimeUnit.SECONDS).release();
+    assertEquals(3, unlocks.get());
+    assertEquals(2, locks.get());
+  }
+
+  @Test
+  public void testWaitersFailWhenUnlockKeepsFailing() throws Exception {
+    LockCoordinator coordinator = new LockCoordinator("test", lock, scheduler, 0, stats);
+    IllegalStateException failure = new IllegalStateException("failed");
+    for (int i = 0; i < 3; i++) {
+      unlockFailures.add(failure);
+    }
+    Lock first = acquire(coordinator, 1000).get(5, TimeUnit.SECONDS);
+    CompletableFuture<Lock> second = acquire(coordinator, 5000);
+    first.release();
+    try {
+      second.get(5, TimeUnit.SECONDS);
+      fail("expected the lock request to fail");
+    } catch (ExecutionException e) {
+      assertSame(failure, e.getCause());
+    }
+    assertEquals(3, unlocks.get());
+    assertEquals(1, locks.get());
+    assertEquals(1, stats.unlockFailures());
+  }
+
+  @Test
+  public void testFailedReleaseIsRetriedBeforeNextAcquire() throws Exception {
+    LockCoordinator coordinator = new LockCoordinator("test", lock, scheduler, 0, stats);
+    for (int i = 0; i < 3; i++) {
+      unlockFailures.add(new IllegalStateException("failed"));
+    }
+    acquire(coordinator, 1000).get(5, TimeUnit.SECONDS).release();
+    awaitUnlockFailure();
+    assertEquals(3, unlocks.get());
+
+    acquire(coordinator, 5000).get(5, TimeUnit.SECONDS).release();
+    assertEquals(5, unlocks.get());
+    assertEquals(2, locks.get());
+  }
+
+  @Test
+  public void testFailedReleaseIsRetriedOnClose() throws Exception {
+    LockCoordinator coordinator = new LockCoordinator("test", lock, scheduler, 0, stats);
+    for (int i = 0; i < 3; i++) {
+      unlockFailures.add(new IllegalStateException("failed"));
+    }
+    acquire(coordinator, 1000).get(5, TimeUnit.SECONDS).release();
+    awaitUnlockFailure();
+
+    coordinator.close().get(5, TimeUnit.SECONDS);
+    assertEquals(4, unlocks.get());
+  }
+
+  /**
+   * Waits for the release of the lock to fail after all retries.
+   */
+  private void awaitUnlockFailure() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (stats.unlockFailures() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, stats.unlockFailures());
+  }
+
+}
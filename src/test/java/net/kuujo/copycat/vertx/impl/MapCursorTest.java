@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.collections.AsyncMap;
+import net.kuujo.copycat.vertx.CodecRegistry;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+/**
+ * Map cursor test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class MapCursorTest {
+
+  /**
+   * Creates a map whose key set contains the given keys.
+   */
+  @SuppressWarnings("unchecked")
+  private static AsyncMap<Integer, String> map(Integer... keys) {
+    Set<Integer> keySet = new LinkedHashSet<>(Arrays.asList(keys));
+    InvocationHandler handler = (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "keySet":
+          return CompletableFuture.completedFuture(keySet);
+        case "isOpen":
+          return true;
+        default:
+          throw new UnsupportedOperationException(method.getName());
+      }
+    };
+    Class<?>[] interfaces = {AsyncMap.class};
+    return (AsyncMap<Integer, String>) Proxy.newProxyInstance(MapCursorTest.class.getClassLoader(),
+      interfaces, handler);
+  }
+
+  /**
+   * Creates a cursor whose pages contain the keys of each page along with the map from which they were read.
+   */
+  private static MapCursor<Integer, String, String> cursor(AsyncMap<Integer, String> map, List<String> reads,
+    int pageSize) {
+    return new MapCursor<>(CompletableFuture.completedFuture(map), AsyncMap::keySet, (m, keys) -> {
+      List<String> page = new ArrayList<>();
+      for (Integer key : keys) {
+        page.add(System.identityHashCode(m) + ":" + key);
+      }
+      reads.add(page.toString());
+      return CompletableFuture.completedFuture(page);
+    }, pageSize);
+  }
+
+  @Test
+  public void testPagesAreReadOnDemand() throws Exception {
+    List<String> reads = new ArrayList<>();
+    AsyncMap<Integer, String> map = map(1, 2, 3, 4, 5);
+    MapCursor<Integer, String, String> cursor = cursor(map, reads, 2);
+    assertTrue(reads.isEmpty());
+
+    String prefix = System.identityHashCode(map) + ":";
+    assertEquals(Arrays.asList(prefix + 1, prefix + 2), cursor.next().get());
+    assertEquals(1, reads.size());
+    assertEquals(Arrays.asList(prefix + 3, prefix + 4), cursor.next().get());
+    assertEquals(2, reads.size());
+    assertEquals(Collections.singletonList(prefix + 5), cursor.next().get());
+    assertNull(cursor.next().get());
+    assertEquals(3, reads.size());
+  }
+
+  @Test
+  public void testEmptyMapHasNoPages() throws Exception {
+    List<String> reads = new ArrayList<>();
+    MapCursor<Integer, String, String> cursor = cursor(map(), reads, 2);
+    assertNull(cursor.next().get());
+    assertTrue(reads.isEmpty());
+  }
+
+  @Test
+  public void testPartitionsAreReadInTurn() throws Exception {
+    List<String> reads = new ArrayList<>();
+    AsyncMap<Integer, String> first = map(1, 2, 3);
+    AsyncMap<Integer, String> empty = map();
+    AsyncMap<Integer, String> last = map(4);
+    PartitionedMap<Integer, String> map = new PartitionedMap<>(Arrays.asList(first, empty, last),
+      new Partitioner(new CodecSerializer(new CodecRegistry(), 0), 3));
+    MapCursor<Integer, String, String> cursor = cursor(map, reads, 2);
+
+    String a = System.identityHashCode(first) + ":";
+    String b = System.identityHashCode(last) + ":";
+    assertEquals(Arrays.asList(a + 1, a + 2), cursor.next().get());
+    assertEquals(Collections.singletonList(a + 3), cursor.next().get());
+    assertEquals(Collections.singletonList(b + 4), cursor.next().get());
+    assertNull(cursor.next().get());
+  }
+
+  @Test
+  public void testFailedKeyReadFailsPage() throws Exception {
+    IllegalStateException error = new IllegalStateException("failed");
+    CompletableFuture<AsyncMap<Integer, String>> map = CompletableFuture.completedFuture(null);
+    MapCursor<Integer, String, Integer> cursor = new MapCursor<>(map, m -> {
+      CompletableFuture<List<Integer>> keys = new CompletableFuture<>();
+      keys.completeExceptionally(error);
+      return keys;
+    }, (m, keys) -> CompletableFuture.completedFuture(keys), 2);
+    assertTrue(cursor.next().isCompletedExceptionally());
+  }
+
+}
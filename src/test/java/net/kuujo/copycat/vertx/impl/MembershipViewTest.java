@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Membership view test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class MembershipViewTest {
+  private ScheduledExecutorService scheduler;
+  private BlockingQueue<Map<String, Boolean>> batches;
+
+  @Before
+  public void setUp() {
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    batches = new LinkedBlockingQueue<>();
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Creates a view of members {@code a} and {@code b}, each with identity {@code 1}.
+   */
+  private MembershipView view(long batchWindow, long suspicionTimeout) {
+    MembershipView view = new MembershipView(scheduler, batchWindow, suspicionTimeout, batches::add);
+    Map<String, Object> members = new LinkedHashMap<>();
+    members.put("a", 1);
+    members.put("b", 1);
+    view.reset(members);
+    return view;
+  }
+
+  /**
+   * Returns a batch with a single change.
+   */
+  private static Map<String, Boolean> batch(String member, boolean joined) {
+    return Collections.singletonMap(member, joined);
+  }
+
+  @Test
+  public void testResetDoesNotReportChanges() {
+    MembershipView view = view(0, 0);
+    assertEquals(Arrays.asList("a", "b"), view.members());
+    assertTrue(batches.isEmpty());
+  }
+
+  @Test
+  public void testChangesAreDeliveredImmediatelyWithoutBatchWindow() {
+    MembershipView view = view(0, 0);
+    view.joined("c", 1);
+    assertEquals(batch("c", true), batches.poll());
+    assertEquals(Arrays.asList("a", "b", "c"), view.members());
+
+    view.left("a");
+    assertEquals(batch("a", false), batches.poll());
+    assertEquals(Arrays.asList("b", "c"), view.members());
+  }
+
+  @Test
+  public void testChangesWithinWindowAreBatched() throws Exception {
+    MembershipView view = view(50, 0);
+    view.joined("c", 1);
+    view.left("a");
+    assertEquals(Arrays.asList("b", "c"), view.members());
+    assertTrue(batches.isEmpty());
+
+    Map<String, Boolean> expected = new LinkedHashMap<>();
+    expected.put("c", true);
+    expected.put("a", false);
+    assertEquals(expected, batches.poll(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testJoinAndLeaveWithinWindowCancelOut() throws Exception {
+    MembershipView view = view(50, 0);
+    view.joined("c", 1);
+    view.left("c");
+    view.joined("d", 1);
+    assertEquals(batch("d", true), batches.poll(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testRejoinWhileSuspectedIsNotReported() throws Exception {
+    MembershipView view = view(0, 10000);
+    view.left("b");
+    assertEquals(Arrays.asList("a", "b"), view.members());
+    view.joined("b", 1);
+    assertEquals(Arrays.asList("a", "b"), view.members());
+    assertTrue(batches.isEmpty());
+  }
+
+  @Test
+  public void testRestartWhileSuspectedReportsLeaveThenJoin() {
+    MembershipView view = view(0, 10000);
+    view.left("b");
+    view.joined("b", 2);
+    assertEquals(batch("b", false), batches.poll());
+    assertEquals(batch("b", true), batches.poll());
+    assertTrue(batches.isEmpty());
+    assertEquals(Arrays.asList("a", "b"), view.members());
+  }
+
+  @Test
+  public void testRestartWithinWindowReportsLeaveThenJoin() throws Exception {
+    MembershipView view = view(50, 0);
+    view.left("b");
+    view.joined("b", 2);
+    assertEquals(batch("b", false), batches.poll());
+    assertEquals(batch("b", true), batches.poll(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testLeaveIsReportedAfterSuspicionTimeout() throws Exception {
+    MembershipView view = view(0, 50);
+    view.left("b");
+    assertTrue(view.members().contains("b"));
+    assertEquals(batch("b", false), batches.poll(5, TimeUnit.SECONDS));
+    assertEquals(Collections.singletonList("a"), view.members());
+  }
+
+  @Test
+  public void testCloseCancelsPendingChanges() throws Exception {
+    MembershipView view = view(50, 50);
+    view.joined("c", 1);
+    view.left("a");
+    view.close();
+    assertNull(batches.poll(200, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testMembersSnapshotIsImmutable() {
+    MembershipView view = view(0, 0);
+    List<String> members = view.members();
+    try {
+      members.add("c");
+      fail("expected the members snapshot to be immutable");
+    } catch (UnsupportedOperationException e) {
+    }
+    view.joined("c", 1);
+    assertEquals(Arrays.asList("a", "b"), members);
+  }
+
+}
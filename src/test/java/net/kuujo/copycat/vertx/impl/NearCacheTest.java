@@ -0,0 +1,208 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.vertx.MemoryBudget;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Near cache test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class NearCacheTest {
+  private final AtomicLong clock = new AtomicLong(1000);
+
+  /**
+   * Creates a cache that sizes entries by the length of their values and reads the time from the test clock.
+   */
+  private NearCache<String, String> cache(long ttl, long maxMemory) {
+    return new NearCache<>(ttl, new MemoryBudget(maxMemory), (key, value) -> value.length(), clock::get);
+  }
+
+  @Test
+  public void testLoadAndLookup() {
+    NearCache<String, String> cache = cache(10000, 0);
+    assertNull(cache.lookup("a"));
+    cache.load("a", "foo", cache.version("a"));
+    assertEquals("foo", cache.lookup("a").value());
+    assertEquals(1, cache.size());
+    assertEquals(3, cache.memory().used());
+    assertEquals(1, cache.hits());
+    assertEquals(1, cache.misses());
+    assertEquals(0, cache.staleHits());
+  }
+
+  @Test
+  public void testLoadStartedBeforeMutationIsDiscarded() {
+    NearCache<String, String> cache = cache(10000, 0);
+    long a = cache.version("a");
+    long b = cache.version("b");
+    cache.invalidate("a");
+    cache.load("a", "old", a);
+    assertNull(cache.lookup("a"));
+
+    cache.load("b", "bar", b);
+    assertEquals("bar", cache.lookup("b").value());
+  }
+
+  @Test
+  public void testLoadDoesNotOverwriteUpdatedEntry() {
+    NearCache<String, String> cache = cache(10000, 0);
+    cache.load("a", "foo", cache.version("a"));
+    long version = cache.version("a");
+    cache.update("a", value -> "bar");
+    cache.load("a", "foo", version);
+    assertEquals("bar", cache.lookup("a").value());
+  }
+
+  @Test
+  public void testUpdate() {
+    NearCache<String, String> cache = cache(10000, 0);
+    cache.load("a", "foo", cache.version("a"));
+    cache.update("a", value -> value + "bar");
+    assertEquals("foobar", cache.lookup("a").value());
+    assertEquals(6, cache.memory().used());
+  }
+
+  @Test
+  public void testUpdateOfAbsentKeyDiscardsLoad() {
+    NearCache<String, String> cache = cache(10000, 0);
+    long version = cache.version("a");
+    cache.update("a", value -> "bar");
+    assertEquals(0, cache.size());
+    cache.load("a", "foo", version);
+    assertNull(cache.lookup("a"));
+  }
+
+  @Test
+  public void testInvalidate() {
+    NearCache<String, String> cache = cache(10000, 0);
+    cache.load("a", "foo", cache.version("a"));
+    cache.load("b", "bar", cache.version("b"));
+    cache.invalidate("a");
+    assertNull(cache.lookup("a"));
+    assertEquals("bar", cache.lookup("b").value());
+    assertEquals(3, cache.memory().used());
+  }
+
+  @Test
+  public void testInvalidateAll() {
+    NearCache<String, String> cache = cache(10000, 0);
+    long version = cache.version("c");
+    cache.load("a", "foo", cache.version("a"));
+    cache.load("b", "bar", cache.version("b"));
+    cache.invalidateAll();
+    cache.load("c", "baz", version);
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.memory().used());
+  }
+
+  @Test
+  public void testStaleEntryIsServedUntilExpired() {
+    NearCache<String, String> cache = cache(100, 0);
+    cache.load("a", "foo", cache.version("a"));
+    clock.addAndGet(100);
+    assertFalse(cache.lookup("a").isStale());
+    clock.addAndGet(1);
+    NearCache.Entry<String> entry = cache.lookup("a");
+    assertNotNull(entry);
+    assertTrue(entry.isStale());
+    clock.addAndGet(100);
+    assertNull(cache.lookup("a"));
+    assertEquals(1, cache.hits());
+    assertEquals(1, cache.staleHits());
+    assertEquals(1, cache.misses());
+  }
+
+  @Test
+  public void testEntryIsRefreshedOncePerTtl() {
+    NearCache<String, String> cache = cache(100, 0);
+    cache.load("a", "foo", cache.version("a"));
+    NearCache.Entry<String> entry = cache.lookup("a");
+    assertFalse(entry.refresh());
+    clock.addAndGet(101);
+    assertTrue(entry.refresh());
+    assertFalse(entry.refresh());
+    clock.addAndGet(100);
+    assertFalse(entry.refresh());
+    clock.addAndGet(1);
+    assertTrue(entry.refresh());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntryIsEvicted() {
+    NearCache<String, String> cache = cache(10000, 10);
+    cache.load("a", "aaaa", cache.version("a"));
+    clock.incrementAndGet();
+    cache.load("b", "bbbb", cache.version("b"));
+    clock.incrementAndGet();
+    cache.lookup("a");
+    cache.load("c", "cccc", cache.version("c"));
+    assertNotNull(cache.lookup("a"));
+    assertNull(cache.lookup("b"));
+    assertNotNull(cache.lookup("c"));
+    assertEquals(1, cache.evictions());
+    assertEquals(8, cache.memory().used());
+  }
+
+  @Test
+  public void testStaleEntryIsEvictedFirst() {
+    NearCache<String, String> cache = cache(100, 10);
+    cache.load("a", "aaaa", cache.version("a"));
+    clock.addAndGet(150);
+    cache.load("b", "bbbb", cache.version("b"));
+    cache.lookup("a");
+    cache.load("c", "cccc", cache.version("c"));
+    assertNull(cache.lookup("a"));
+    assertNotNull(cache.lookup("b"));
+    assertNotNull(cache.lookup("c"));
+    assertEquals(1, cache.evictions());
+  }
+
+  @Test
+  public void testFullCacheEvictsOnlyWhatIsNeeded() {
+    NearCache<String, String> cache = cache(10000, 1000);
+    for (int i = 0; i < 1000; i++) {
+      cache.load("key" + i, "v", cache.version("key" + i));
+    }
+    assertEquals(1000, cache.size());
+    for (int i = 0; i < 100; i++) {
+      clock.incrementAndGet();
+      cache.load("new" + i, "vv", cache.version("new" + i));
+      assertNotNull(cache.lookup("new" + i));
+      assertTrue(cache.memory().used() <= 1000);
+    }
+    assertTrue(cache.evictions() >= 100 && cache.evictions() <= 200);
+    assertEquals(0, cache.memory().rejected());
+  }
+
+  @Test
+  public void testEntryLargerThanBudgetIsNotCached() {
+    NearCache<String, String> cache = cache(10000, 10);
+    cache.load("a", "aaaa", cache.version("a"));
+    cache.load("b", "bbbbbbbbbbb", cache.version("b"));
+    assertNull(cache.lookup("b"));
+    assertNotNull(cache.lookup("a"));
+    assertEquals(0, cache.evictions());
+    assertEquals(1, cache.memory().rejected());
+  }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.vertx.DefaultClusterManagerMetrics;
+import net.kuujo.copycat.vertx.ReadStats;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Operation tracker test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class OperationTrackerTest {
+
+  @Test
+  public void testCompletedOperationIsRecorded() {
+    DefaultClusterManagerMetrics metrics = new DefaultClusterManagerMetrics();
+    OperationTracker tracker = new OperationTracker(metrics);
+    CompletableFuture<String> operation = new CompletableFuture<>();
+    CompletableFuture<String> future = tracker.track("map.get", () -> operation);
+    assertEquals(1, metrics.operation("map.get").inFlight());
+
+    operation.complete("foo");
+    assertEquals("foo", future.join());
+    assertEquals(0, metrics.operation("map.get").inFlight());
+    assertEquals(1, metrics.operation("map.get").count());
+    assertEquals(0, metrics.operation("map.get").errors());
+  }
+
+  @Test
+  public void testFailedOperationIsRecorded() {
+    DefaultClusterManagerMetrics metrics = new DefaultClusterManagerMetrics();
+    OperationTracker tracker = new OperationTracker(metrics);
+    CompletableFuture<String> operation = new CompletableFuture<>();
+    CompletableFuture<String> future = tracker.track("map.get", () -> operation);
+    operation.completeExceptionally(new IllegalStateException("failed"));
+    assertTrue(future.isCompletedExceptionally());
+    assertEquals(0, metrics.operation("map.get").inFlight());
+    assertEquals(1, metrics.operation("map.get").errors());
+  }
+
+  @Test
+  public void testThrowingSupplierFailsFuture() {
+    DefaultClusterManagerMetrics metrics = new DefaultClusterManagerMetrics();
+    OperationTracker tracker = new OperationTracker(metrics);
+    IllegalStateException error = new IllegalStateException("closed");
+    CompletableFuture<String> future = tracker.track("map.get", () -> {
+      throw error;
+    });
+    try {
+      future.join();
+      fail("expected the operation to fail");
+    } catch (CompletionException e) {
+      assertSame(error, e.getCause());
+    }
+    assertEquals(0, metrics.operation("map.get").inFlight());
+    assertEquals(1, metrics.operation("map.get").errors());
+  }
+
+  @Test
+  public void testReadsAreRecorded() {
+    ReadStats stats = new ReadStats(false);
+    OperationTracker tracker = new OperationTracker(new DefaultClusterManagerMetrics(), stats);
+    tracker.recordRead(CompletableFuture.completedFuture("foo"));
+    CompletableFuture<String> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IllegalStateException("failed"));
+    tracker.recordRead(failed);
+    assertEquals(2, stats.reads());
+    assertEquals(1, stats.failures());
+    assertEquals(1, stats.successes());
+    assertFalse(stats.isConfirmed());
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import io.vertx.core.net.impl.ServerID;
+import net.kuujo.copycat.vertx.CodecRegistry;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Partitioner test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class PartitionerTest {
+
+  private static Partitioner partitioner(int partitions) {
+    return new Partitioner(new CodecSerializer(new CodecRegistry(), 0), partitions);
+  }
+
+  @Test
+  public void testPartitionsAreInRange() {
+    Partitioner partitioner = partitioner(7);
+    assertEquals(7, partitioner.partitions());
+    for (int i = -1000; i < 1000; i++) {
+      int partition = partitioner.partition(i);
+      assertTrue(partition >= 0 && partition < 7);
+    }
+  }
+
+  @Test
+  public void testPartitionIsDeterministic() {
+    Partitioner a = partitioner(16);
+    Partitioner b = partitioner(16);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(a.partition("key" + i), b.partition("key" + i));
+      assertEquals(a.partition((long) i), b.partition((long) i));
+    }
+  }
+
+  @Test
+  public void testSerializedKeysAreDeterministic() {
+    Partitioner a = partitioner(16);
+    Partitioner b = partitioner(16);
+    for (int i = 0; i < 100; i++) {
+      ServerID key = new ServerID(i, "localhost");
+      assertEquals(a.partition(key), b.partition(new ServerID(i, "localhost")));
+    }
+  }
+
+  @Test
+  public void testKeysAreSpreadAcrossPartitions() {
+    Partitioner partitioner = partitioner(8);
+    Set<Integer> strings = new HashSet<>();
+    Set<Integer> serialized = new HashSet<>();
+    for (int i = 0; i < 100; i++) {
+      strings.add(partitioner.partition("key" + i));
+      serialized.add(partitioner.partition(new ServerID(i, "localhost")));
+    }
+    assertEquals(8, strings.size());
+    assertEquals(8, serialized.size());
+  }
+
+  @Test
+  public void testNullKeyHasPartition() {
+    Partitioner partitioner = partitioner(8);
+    assertEquals(partitioner.partition(null), partitioner.partition(null));
+    assertEquals(partitioner.partition(0), partitioner.partition(null));
+  }
+
+  @Test
+  public void testSinglePartition() {
+    Partitioner partitioner = partitioner(1);
+    assertEquals(0, partitioner.partition("foo"));
+    assertEquals(0, partitioner.partition(Integer.MIN_VALUE));
+    assertEquals(0, partitioner.partition(new ServerID(1234, "localhost")));
+  }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Resource registry test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class ResourceRegistryTest {
+  private static final long IDLE_TIMEOUT = 60000;
+
+  private final AtomicLong clock = new AtomicLong(1000);
+  private final AtomicInteger opens = new AtomicInteger();
+  private final List<Resource> closed = new CopyOnWriteArrayList<>();
+  private ScheduledExecutorService scheduler;
+  private ResourceRegistry registry;
+
+  @Before
+  public void setUp() {
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    registry = new ResourceRegistry(scheduler, IDLE_TIMEOUT, clock::get);
+  }
+
+  @After
+  public void tearDown() {
+    registry.close();
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Opens a new resource.
+   */
+  private CompletableFuture<Resource> open() {
+    return CompletableFuture.completedFuture(new Resource(opens.incrementAndGet()));
+  }
+
+  /**
+   * Closes a resource.
+   */
+  private CompletableFuture<Void> close(Resource resource) {
+    resource.closed = true;
+    closed.add(resource);
+    return CompletableFuture.completedFuture(null);
+  }
+
+  private CompletableFuture<Resource> acquire(String name) {
+    return registry.acquire(Resource.class, name, this::open, this::close);
+  }
+
+  @Test
+  public void testConcurrentLookupsShareOpen() {
+    CompletableFuture<Resource> opening = new CompletableFuture<>();
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<Resource> first = registry.get(Resource.class, "a", () -> {
+      calls.incrementAndGet();
+      return opening;
+    });
+    CompletableFuture<Resource> second = registry.get(Resource.class, "a", () -> {
+      calls.incrementAndGet();
+      return opening;
+    });
+    assertEquals(1, calls.get());
+    assertFalse(first.isDone());
+
+    opening.complete(new Resource(1));
+    assertSame(first.join(), second.join());
+  }
+
+  @Test
+  public void testHandlesAreKeyedByTypeAndName() {
+    Resource a = acquire("a").join();
+    Resource b = acquire("b").join();
+    Object other = registry.acquire(Object.class, "a", this::open, resource -> null).join();
+    assertNotSame(a, b);
+    assertNotSame(a, other);
+    assertSame(a, acquire("a").join());
+    assertEquals(3, registry.size());
+  }
+
+  @Test
+  public void testPinnedHandleIsNeverEvicted() {
+    Resource resource = registry.get(Resource.class, "a", this::open).join();
+    clock.addAndGet(IDLE_TIMEOUT * 10);
+    registry.evict();
+    assertEquals(1, registry.size());
+    assertSame(resource, registry.get(Resource.class, "a", this::open).join());
+  }
+
+  @Test
+  public void testReferencedHandleIsNotEvicted() {
+    Resource resource = acquire("a").join();
+    clock.addAndGet(IDLE_TIMEOUT * 10);
+    registry.evict();
+    assertEquals(1, registry.size());
+    assertFalse(resource.closed);
+  }
+
+  @Test
+  public void testIdleHandleIsEvictedAfterTimeout() {
+    Resource resource = acquire("a").join();
+    registry.release(Resource.class, "a");
+    clock.addAndGet(IDLE_TIMEOUT);
+    registry.evict();
+    assertEquals(1, registry.size());
+
+    clock.incrementAndGet();
+    registry.evict();
+    assertEquals(0, registry.size());
+    assertTrue(resource.closed);
+
+    Resource reopened = acquire("a").join();
+    assertNotSame(resource, reopened);
+    assertEquals(2, opens.get());
+  }
+
+  @Test
+  public void testHandleIsEvictedOnlyOnceAllReferencesAreReleased() {
+    Resource resource = acquire("a").join();
+    acquire("a").join();
+    registry.release(Resource.class, "a");
+    clock.addAndGet(IDLE_TIMEOUT + 1);
+    registry.evict();
+    assertFalse(resource.closed);
+
+    registry.release(Resource.class, "a");
+    clock.addAndGet(IDLE_TIMEOUT + 1);
+    registry.evict();
+    assertTrue(resource.closed);
+  }
+
+  @Test
+  public void testPinningReferencedHandlePreventsEviction() {
+    Resource resource = acquire("a").join();
+    registry.get(Resource.class, "a", this::open).join();
+    registry.release(Resource.class, "a");
+    clock.addAndGet(IDLE_TIMEOUT + 1);
+    registry.evict();
+    assertEquals(1, registry.size());
+    assertFalse(resource.closed);
+  }
+
+  @Test
+  public void testPendingOpenIsNotEvicted() {
+    CompletableFuture<Resource> opening = new CompletableFuture<>();
+    CompletableFuture<Resource> future = registry.acquire(Resource.class, "a", () -> opening, this::close);
+    registry.release(Resource.class, "a");
+    clock.addAndGet(IDLE_TIMEOUT + 1);
+    registry.evict();
+    assertEquals(1, registry.size());
+
+    opening.complete(new Resource(1));
+    assertFalse(future.join().closed);
+  }
+
+  @Test
+  public void testFailedOpenIsRetried() {
+    CompletableFuture<Resource> failed = registry.acquire(Resource.class, "a", () -> {
+      throw new IllegalStateException("failed");
+    }, this::close);
+    assertTrue(failed.isCompletedExceptionally());
+    assertEquals(0, registry.size());
+    assertNotNull(acquire("a").join());
+    assertEquals(1, opens.get());
+  }
+
+  @Test
+  public void testConcurrentAcquireAndEvictNeverReturnsClosedResource() throws Exception {
+    for (int i = 0; i < 2000; i++) {
+      acquire("a").join();
+      registry.release(Resource.class, "a");
+      clock.addAndGet(IDLE_TIMEOUT + 1);
+
+      CountDownLatch start = new CountDownLatch(1);
+      CompletableFuture<Resource> acquired = new CompletableFuture<>();
+      Thread acquirer = new Thread(() -> {
+        try {
+          start.await();
+          acquired.complete(acquire("a").join());
+        } catch (Throwable e) {
+          acquired.completeExceptionally(e);
+        }
+      });
+      Thread evictor = new Thread(() -> {
+        try {
+          start.await();
+          registry.evict();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      acquirer.start();
+      evictor.start();
+      start.countDown();
+      acquirer.join();
+      evictor.join();
+
+      Resource resource = acquired.get(5, TimeUnit.SECONDS);
+      assertFalse(resource.closed);
+      registry.release(Resource.class, "a");
+    }
+    assertEquals(opens.get() - 1, closed.size());
+  }
+
+  /**
+   * Test resource.
+   */
+  private static class Resource {
+    private final int id;
+    private volatile boolean closed;
+
+    private Resource(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public String toString() {
+      return "Resource " + id;
+    }
+  }
+
+}
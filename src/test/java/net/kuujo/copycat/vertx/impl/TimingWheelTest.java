@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Timing wheel test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class TimingWheelTest {
+  private static final long TICK = 10;
+
+  private ScheduledExecutorService scheduler;
+  private BlockingQueue<List<String>> batches;
+  private TimingWheel<String> wheel;
+
+  @Before
+  public void setUp() {
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    batches = new LinkedBlockingQueue<>();
+    wheel = new TimingWheel<>(scheduler, TICK, 4, batches::add);
+  }
+
+  @After
+  public void tearDown() {
+    wheel.close();
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void testItemExpiresAfterDelay() throws Exception {
+    long startTime = System.nanoTime();
+    wheel.schedule("a", 30);
+    assertEquals(Collections.singletonList("a"), batches.poll(5, TimeUnit.SECONDS));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) >= 30 - TICK);
+  }
+
+  @Test
+  public void testItemsExpiringInSameTickAreBatched() throws Exception {
+    synchronized (wheel) {
+      wheel.schedule("a", 20);
+      wheel.schedule("b", 20);
+      wheel.schedule("c", 20);
+    }
+    List<String> batch = new ArrayList<>(batches.poll(5, TimeUnit.SECONDS));
+    Collections.sort(batch);
+    assertEquals(Arrays.asList("a", "b", "c"), batch);
+  }
+
+  @Test
+  public void testItemsBeyondLowestWheelAreCascaded() throws Exception {
+    long startTime = System.nanoTime();
+    wheel.schedule("b", 250);
+    wheel.schedule("a", 100);
+    assertEquals(Collections.singletonList("a"), batches.poll(5, TimeUnit.SECONDS));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) >= 100 - TICK);
+    assertEquals(Collections.singletonList("b"), batches.poll(5, TimeUnit.SECONDS));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) >= 250 - TICK);
+  }
+
+  @Test
+  public void testCloseReturnsPendingItems() throws Exception {
+    wheel.schedule("a", 10000);
+    wheel.schedule("b", 20);
+    wheel.schedule("c", 1000000);
+    assertEquals(Collections.singletonList("b"), batches.poll(5, TimeUnit.SECONDS));
+
+    List<String> pending = new ArrayList<>(wheel.close());
+    Collections.sort(pending);
+    assertEquals(Arrays.asList("a", "c"), pending);
+    assertTrue(wheel.close().isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTickMustBePositive() {
+    new TimingWheel<String>(scheduler, 0, 4, items -> {});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWheelSizeMustBeGreaterThanOne() {
+    new TimingWheel<String>(scheduler, TICK, 1, items -> {});
+  }
+
+}
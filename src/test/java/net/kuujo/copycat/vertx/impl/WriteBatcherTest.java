@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.kuujo.copycat.vertx.impl;
+
+import net.kuujo.copycat.collections.AsyncMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+/**
+ * Write batcher test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class WriteBatcherTest {
+  private ScheduledExecutorService scheduler;
+  private List<Map<String, String>> batches;
+
+  @Before
+  public void setUp() {
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    batches = Collections.synchronizedList(new ArrayList<>());
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Creates a map that records each batch and commits it with the given function.
+   */
+  @SuppressWarnings("unchecked")
+  private AsyncMap<String, String> map(Function<Map<String, String>, CompletableFuture<Void>> putAll) {
+    InvocationHandler handler = (proxy, method, args) -> {
+      if (!method.getName().equals("putAll")) {
+        throw new UnsupportedOperationException(method.getName());
+      }
+      Map<String, String> batch = new LinkedHashMap<>((Map<String, String>) args[0]);
+      batches.add(batch);
+      return putAll.apply(batch);
+    };
+    Class<?>[] interfaces = {AsyncMap.class};
+    return (AsyncMap<String, String>) Proxy.newProxyInstance(getClass().getClassLoader(), interfaces, handler);
+  }
+
+  /**
+   * Creates a map that commits each batch immediately.
+   */
+  private AsyncMap<String, String> map() {
+    return map(batch -> CompletableFuture.completedFuture(null));
+  }
+
+  @Test
+  public void testPutsWithinWindowAreBatched() throws Exception {
+    WriteBatcher<String, String> batcher = new WriteBatcher<>(map(), scheduler, 50, 100);
+    CompletableFuture<Void> a = batcher.put("a", "1");
+    CompletableFuture<Void> b = batcher.put("b", "2");
+    CompletableFuture<Void> c = batcher.put("c", "3");
+    CompletableFuture.allOf(a, b, c).get(5, TimeUnit.SECONDS);
+    assertEquals(1, batches.size());
+    assertEquals(3, batches.get(0).size());
+  }
+
+  @Test
+  public void testFullBatchIsSentWithoutWaitingForWindow() throws Exception {
+    WriteBatcher<String, String> batcher = new WriteBatcher<>(map(), scheduler, 10000, 2);
+    batcher.put("a", "1");
+    batcher.put("b", "2").get(5, TimeUnit.SECONDS);
+    assertEquals(1, batches.size());
+    assertEquals(2, batches.get(0).size());
+  }
+
+  @Test
+  public void testPutsDuringInFlightBatchAreSentAsNextBatch() throws Exception {
+    List<CompletableFuture<Void>> commits = Collections.synchronizedList(new ArrayList<>());
+    WriteBatcher<String, String> batcher = new WriteBatcher<>(map(batch -> {
+      CompletableFuture<Void> commit = new CompletableFuture<>();
+      commits.add(commit);
+      return commit;
+    }), scheduler, 10, 1);
+    CompletableFuture<Void> a = batcher.put("a", "1");
+    CompletableFuture<Void> b = batcher.put("b", "2");
+    CompletableFuture<Void> c = batcher.put("c", "3");
+    assertEquals(1, batches.size());
+    assertFalse(b.isDone());
+
+    commits.get(0).complete(null);
+    a.get(5, TimeUnit.SECONDS);
+    assertEquals(2, batches.size());
+    assertEquals(Collections.singletonMap("b", "2"), batches.get(1));
+
+    commits.get(1).complete(null);
+    b.get(5, TimeUnit.SECONDS);
+    commits.get(2).complete(null);
+    c.get(5, TimeUnit.SECONDS);
+    assertEquals(3, batches.size());
+  }
+
+  @Test
+  public void testFailedBatchFailsItsPuts() throws Exception {
+    IllegalStateException failure = new IllegalStateException("failed");
+    WriteBatcher<String, String> batcher = new WriteBatcher<>(map(batch -> {
+      CompletableFuture<Void> commit = new CompletableFuture<>();
+      commit.completeExceptionally(failure);
+      return commit;
+    }), scheduler, 10, 100);
+    try {
+      batcher.put("a", "1").get(5, TimeUnit.SECONDS);
+      fail("expected the put to fail");
+    } catch (ExecutionException e) {
+      assertSame(failure, e.getCause());
+    }
+  }
+
+  @Test
+  public void testSynchronousFailureDoesNotStallBatcher() throws Exception {
+    WriteBatcher<String, String> batcher = new WriteBatcher<>(map(batch -> {
+      if (batches.size() == 1) {
+        throw new IllegalStateException("closed");
+      }
+      return CompletableFuture.completedFuture(null);
+    }), scheduler, 10, 100);
+    try {
+      batcher.put("a", "1").get(5, TimeUnit.SECONDS);
+      fail("expected the put to fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+    batcher.put("b", "2").get(5, TimeUnit.SECONDS);
+    assertEquals(2, batches.size());
+  }
+
+  @Test
+  public void testBarrierCompletesAfterPendingBatches() throws Exception {
+    CompletableFuture<Void> commit = new CompletableFuture<>();
+    WriteBatcher<String, String> batcher = new WriteBatcher<>(map(batch -> commit), scheduler, 10000, 100);
+    CompletableFuture<Void> put = batcher.put("a", "1");
+    CompletableFuture<Void> barrier = batcher.barrier();
+    assertEquals(1, batches.size());
+    assertFalse(barrier.isDone());
+
+    commit.completeExceptionally(new IllegalStateException("failed"));
+    barrier.get(5, TimeUnit.SECONDS);
+    assertTrue(put.isCompletedExceptionally());
+  }
+
+}